@@ -0,0 +1,25 @@
+/*
+ * Shared setup for JMH benchmark projects.
+ */
+
+plugins {
+    // Apply the common convention plugin for shared build configuration between library and application projects.
+    id("com.saivishnu.lox.java-common-conventions")
+
+    // Apply the JMH plugin, benchmarks live in src/jmh/java and run with the 'jmh' task.
+    id("me.champeau.jmh")
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    // throughput (ops/s) for every benchmark
+    benchmarkMode.set(listOf("thrpt"))
+    // the gc profiler adds the allocation rate (gc.alloc.rate.norm = bytes/op) to every result
+    profilers.add("gc")
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    resultFormat.set("JSON")
+    // ./gradlew jmh -Pjmh.includes=<regex> runs only the matching benchmarks
+    (findProperty("jmh.includes") as String?)?.let { includes.set(listOf(it)) }
+}
@@ -24,6 +24,12 @@ dependencies {
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
 }
 
+tasks.withType<JavaCompile>().configureEach {
+    // the sources are Java 11, whatever JDK runs the build. newer APIs are only
+    // used through reflection with a fallback (virtual threads, see Tasks)
+    options.release.set(11)
+}
+
 tasks.named<Test>("test") {
     // Use JUnit Platform for unit tests.
     useJUnitPlatform()
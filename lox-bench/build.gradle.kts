@@ -0,0 +1,8 @@
+plugins {
+    id("com.saivishnu.lox.java-benchmark-conventions")
+}
+
+dependencies {
+    // the benchmarks are in the same package as the interpreter to reach its package-private classes
+    jmh(project(":lox"))
+}
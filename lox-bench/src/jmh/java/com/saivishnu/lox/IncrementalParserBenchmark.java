@@ -0,0 +1,48 @@
+package com.saivishnu.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One keystroke in the middle of a large script: IncrementalParser.edit()
+ * against scanning and parsing the whole text again.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IncrementalParserBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int size;
+
+    private String source;
+    private IncrementalParser parser;
+    // where the edit goes, a digit of a number in the middle of the text
+    private int offset;
+    private boolean flip = false;
+
+    @Setup
+    public void setup() {
+        source = Programs.largeTokenStream(size);
+        parser = new IncrementalParser(source, new ErrorReporter(System.err));
+        offset = source.indexOf(".5", source.length() / 2) - 1;
+    }
+
+    @Benchmark
+    public List<Stmt> edit() {
+        // type a 7 over the digit, then the digit back, so the text doesn't grow
+        flip = !flip;
+        return parser.edit(offset, 1, flip ? "7" : source.substring(offset, offset + 1));
+    }
+
+    @Benchmark
+    public List<Stmt> fullParse() {
+        return new Parser(new Scanner(source).scan()).parse();
+    }
+}
@@ -0,0 +1,61 @@
+package com.saivishnu.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Running an already parsed and resolved program, on the tree-walking
+ * Interpreter, on the bytecode VM and on the ClosureRuntime (both compiled
+ * once in the setup).
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class InterpreterBenchmark {
+
+    @Param({ "tokens", "nested", "print" })
+    public String program;
+
+    @Param({ "1000", "10000" })
+    public int size;
+
+    private List<Stmt> statements;
+    private Chunk chunk;
+    private ClosureCompiler.Exec closure;
+    private Interpreter interpreter;
+    private VM vm;
+    private ClosureRuntime closures;
+
+    @Setup
+    public void setup() {
+        statements = Programs.compile(Programs.byName(program, program.equals("nested") ? size / 10 : size));
+        chunk = new Compiler().compile(statements);
+        closure = new ClosureCompiler().compile(statements);
+        // print goes nowhere, runtime errors would still show up
+        ErrorReporter reporter = new ErrorReporter(System.err);
+        interpreter = new Interpreter(Programs.nullOutput(), reporter);
+        vm = new VM(Programs.nullOutput(), reporter);
+        closures = new ClosureRuntime(Programs.nullOutput(), reporter);
+    }
+
+    @Benchmark
+    public void treeWalker() {
+        interpreter.interpret(statements);
+    }
+
+    @Benchmark
+    public void vm() {
+        vm.interpret(chunk);
+    }
+
+    @Benchmark
+    public void closures() {
+        closures.interpret(closure);
+    }
+}
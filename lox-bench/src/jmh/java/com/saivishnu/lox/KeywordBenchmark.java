@@ -0,0 +1,75 @@
+package com.saivishnu.lox;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Keyword matching on its own, side by side: cutting every word out of the
+ * source and asking the keywords map (what the Scanner used to do), against
+ * Scanner.keyword() reading the word in place. The words are those of the
+ * identifier heavy program, found once in the setup.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class KeywordBenchmark {
+
+    @Param({ "1000", "10000" })
+    public int size;
+
+    private Source source;
+    // start and end of every word in the source
+    private int[] starts;
+    private int[] ends;
+
+    @Setup
+    public void setup() {
+        String text = Programs.identifierHeavy(size);
+        source = Source.of(text);
+        starts = new int[text.length()];
+        ends = new int[text.length()];
+        int words = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (!isAlpha(text.charAt(i)))
+                continue;
+            int start = i;
+            while (i < text.length() && (isAlpha(text.charAt(i)) || Character.isDigit(text.charAt(i))))
+                i++;
+            starts[words] = start;
+            ends[words] = i;
+            words++;
+        }
+        starts = Arrays.copyOf(starts, words);
+        ends = Arrays.copyOf(ends, words);
+    }
+
+    private static boolean isAlpha(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    // a String per word, then a hash lookup
+    @Benchmark
+    public int map() {
+        int keywords = 0;
+        for (int i = 0; i < starts.length; i++)
+            if (Scanner.keywords.get(source.text(starts[i], ends[i])) != null)
+                keywords++;
+        return keywords;
+    }
+
+    // no allocation, a switch on the first chars
+    @Benchmark
+    public int inPlace() {
+        int keywords = 0;
+        for (int i = 0; i < starts.length; i++)
+            if (Scanner.keyword(source, starts[i], ends[i]) != null)
+                keywords++;
+        return keywords;
+    }
+}
@@ -0,0 +1,40 @@
+package com.saivishnu.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parser.parse() over tokens that were scanned once in the setup.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParserBenchmark {
+
+    @Param({ "tokens", "nested", "print" })
+    public String program;
+
+    @Param({ "1000", "10000" })
+    public int size;
+
+    private TokenBuffer tokens;
+
+    @Setup
+    public void setup() {
+        String source = Programs.byName(program, program.equals("nested") ? size / 10 : size);
+        // fails if the source doesn't parse
+        Programs.compile(source);
+        tokens = new Scanner(source).scan();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens).parse();
+    }
+}
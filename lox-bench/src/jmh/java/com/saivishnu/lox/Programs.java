@@ -0,0 +1,102 @@
+package com.saivishnu.lox;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * The Programs class builds the synthetic Lox sources used by the benchmarks.
+ * Sources are generated instead of read from files so every size is available
+ * and the benchmarks don't depend on the working directory.
+ */
+final class Programs {
+
+    private Programs() {
+    }
+
+    // many short statements with every kind of token, for the scanner
+    static String largeTokenStream(int statements) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < statements; i++) {
+            sb.append("var name").append(i).append(" = (").append(i).append(".5 + 2) * 3 >= 4 == !false;")
+                    .append(" // comment\n");
+            sb.append("print \"string ").append(i).append("\" + \"tail\";\n");
+        }
+        return sb.toString();
+    }
+
+    /*
+     * deepest level a statement of nestedExpression() goes to: each level,
+     * (i + -, is a grouping, a right operand and a unary operand deep, and
+     * the parser rejects anything nested more than Parser.MAX_DEPTH
+     */
+    static final int MAX_NESTING = Parser.MAX_DEPTH / 3 - 1;
+
+    // expressions nested depth levels deep in all, for the parser's frame stack.
+    // they are split into statements of at most MAX_NESTING levels each
+    static String nestedExpression(int depth) {
+        StringBuilder sb = new StringBuilder();
+        for (int start = 0; start < depth; start += MAX_NESTING) {
+            int levels = Math.min(MAX_NESTING, depth - start);
+            sb.append("print ");
+            for (int i = start; i < start + levels; i++)
+                sb.append("(").append(i).append(" + -");
+            sb.append("1");
+            for (int i = 0; i < levels; i++)
+                sb.append(")");
+            sb.append(";\n");
+        }
+        return sb.toString();
+    }
+
+    // lots of small arithmetic prints, for the interpreter and output path
+    static String printHeavy(int statements) {
+        StringBuilder sb = new StringBuilder("var base = 10;\n");
+        for (int i = 0; i < statements; i++)
+            sb.append("print base * ").append(i).append(" - ").append(i % 7).append(" / 2;\n");
+        return sb.toString();
+    }
+
+    // mostly names, many of them keywords or close to one, for keyword matching
+    static String identifierHeavy(int statements) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < statements; i++) {
+            sb.append("var classic").append(i).append(" = forest and superb or nilly and this;\n");
+            sb.append("print false or true and variable or nil and whiles").append(i % 10).append(";\n");
+        }
+        return sb.toString();
+    }
+
+    static String byName(String name, int size) {
+        switch (name) {
+            case "tokens":
+                return largeTokenStream(size);
+            case "nested":
+                return nestedExpression(size);
+            case "print":
+                return printHeavy(size);
+            case "identifiers":
+                return identifierHeavy(size);
+            default:
+                throw new IllegalArgumentException("Unknown program " + name);
+        }
+    }
+
+    // scan, parse and resolve a source the way Lox.run() does. a benchmark of a
+    // source that doesn't parse would only measure the error path, so that fails
+    static List<Stmt> compile(String source) {
+        SymbolTable symbols = new SymbolTable();
+        ErrorReporter reporter = new ErrorReporter(System.err);
+        List<Stmt> statements = new Parser(new Scanner(Source.of(source), reporter, symbols).scan(), reporter).parse();
+        if (reporter.hadError)
+            throw new IllegalStateException("Benchmark program has syntax errors.");
+        new Resolver(symbols).resolve(statements);
+        return statements;
+    }
+
+    // print statements would flood the benchmark output, send them nowhere
+    static PrintSink nullOutput() {
+        return new BufferedSink(OutputStream.nullOutputStream(), StandardCharsets.UTF_8, BufferedSink.Flush.EXIT, 0, 0,
+                false);
+    }
+}
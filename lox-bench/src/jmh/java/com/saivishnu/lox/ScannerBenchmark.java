@@ -0,0 +1,37 @@
+package com.saivishnu.lox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Scanner.scanTokens() on its own.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ScannerBenchmark {
+
+    @Param({ "tokens", "nested", "print", "identifiers" })
+    public String program;
+
+    @Param({ "1000", "10000" })
+    public int size;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        // nesting gets its own, smaller scale so the parser benchmarks can share it
+        source = Programs.byName(program, program.equals("nested") ? size / 10 : size);
+    }
+
+    @Benchmark
+    public TokenBuffer scan() {
+        return new Scanner(source).scan();
+    }
+}
@@ -0,0 +1,384 @@
+package com.saivishnu.lox;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The AstCodec class writes parsed statements in a compact binary form and
+ * reads them back.
+ * Every node is a tag byte followed by its fields. Numbers that are usually
+ * small (lines, counts, string indexes) are varints, and every distinct
+ * string (names, lexemes, string literals) is written once and referred to by
+ * index afterwards.
+ * Only the syntax is written: fields filled in after parsing (slots, binary
+ * nodes) are worked out again after loading.
+ */
+class AstCodec implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    // statement tags
+    private static final int EXPRESSION = 0;
+    private static final int PRINT = 1;
+    private static final int VAR = 2;
+    private static final int SPAWN = 3;
+    // expression tags
+    private static final int BINARY = 0;
+    private static final int GROUPING = 1;
+    private static final int LITERAL = 2;
+    private static final int UNARY = 3;
+    private static final int VARIABLE = 4;
+    private static final int CALL = 5;
+    // literal value tags
+    private static final int NIL = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int NUMBER = 3;
+    private static final int STRING = 4;
+    // marks a missing (null) expression, e.g. a var without an initializer
+    private static final int NONE = 255;
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    private AstCodec(DataOutputStream out) {
+        this.out = out;
+    }
+
+    static void write(List<Stmt> statements, DataOutputStream out) throws IOException {
+        AstCodec codec = new AstCodec(out);
+        writeVarint(out, statements.size());
+        try {
+            for (Stmt statement : statements) {
+                statement.accept(codec);
+            }
+        } catch (UncheckedIOException error) {
+            // visitors can't throw checked exceptions, unwrap it again
+            throw error.getCause();
+        }
+    }
+
+    // names are interned into symbols, the same way the Scanner does it
+    static List<Stmt> read(DataInputStream in, SymbolTable symbols) throws IOException {
+        Reader reader = new Reader(in, symbols);
+        int count = readVarint(in);
+        List<Stmt> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            statements.add(reader.statement());
+        return statements;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        tag(EXPRESSION);
+        expression(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        tag(PRINT);
+        expression(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitSpawnStmt(Stmt.Spawn stmt) {
+        tag(SPAWN);
+        token(stmt.keyword);
+        stmt.body.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        tag(VAR);
+        token(stmt.name);
+        expression(stmt.initializer);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        /*
+         * a + b + c + ... in a loop. it comes out the same as writing one
+         * operator at a time, tag, left, operator, right: the tags of the
+         * whole chain, then its first operand, then each operator with its
+         * right operand.
+         */
+        Expr.Binary[] chain = Chains.of(expr);
+        for (int i = 0; i < chain.length; i++)
+            tag(BINARY);
+        expression(chain[0].left);
+        for (Expr.Binary link : chain) {
+            token(link.operator);
+            expression(link.right);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        tag(CALL);
+        expression(expr.callee);
+        token(expr.paren);
+        count(expr.arguments.size());
+        for (Expr argument : expr.arguments)
+            expression(argument);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        tag(GROUPING);
+        expression(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        tag(LITERAL);
+        value(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        tag(UNARY);
+        token(expr.operator);
+        expression(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        tag(VARIABLE);
+        token(expr.name);
+        return null;
+    }
+
+    private void expression(Expr expr) {
+        if (expr == null)
+            tag(NONE);
+        else
+            expr.accept(this);
+    }
+
+    // the type, lexeme and line of a token. the literal is only kept on Literal nodes
+    private void token(Token token) {
+        try {
+            out.writeByte(token.type.ordinal());
+            string(token.lexeme);
+            writeVarint(out, token.line);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    private void value(Object value) {
+        try {
+            if (value == null) {
+                out.writeByte(NIL);
+            } else if (value instanceof Boolean) {
+                out.writeByte((boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Double) {
+                out.writeByte(NUMBER);
+                out.writeDouble((double) value);
+            } else {
+                out.writeByte(STRING);
+                string((String) value);
+            }
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    // index of a string written before, or a new index followed by the string itself
+    private void string(String value) throws IOException {
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeVarint(out, index);
+            return;
+        }
+        strings.put(value, strings.size());
+        writeVarint(out, strings.size() - 1);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private void count(int count) {
+        try {
+            writeVarint(out, count);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    private void tag(int tag) {
+        try {
+            out.writeByte(tag);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    // 7 bits at a time, the high bit says there is more
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+    // the other direction, mirrors the visitor methods above
+    private static class Reader {
+        private final DataInputStream in;
+        private final List<String> strings = new ArrayList<>();
+        private final SymbolTable symbols;
+
+        Reader(DataInputStream in, SymbolTable symbols) {
+            this.in = in;
+            this.symbols = symbols;
+        }
+
+        Stmt statement() throws IOException {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case EXPRESSION:
+                    return new Stmt.Expression(expression());
+                case PRINT:
+                    return new Stmt.Print(expression());
+                case VAR: {
+                    Token name = token();
+                    return new Stmt.Var(name, optionalExpression());
+                }
+                case SPAWN: {
+                    Token keyword = token();
+                    return new Stmt.Spawn(keyword, statement());
+                }
+                default:
+                    throw new IOException("Unknown statement tag " + tag + ".");
+            }
+        }
+
+        Expr expression() throws IOException {
+            Expr expr = optionalExpression();
+            if (expr == null)
+                throw new IOException("Missing expression.");
+            return expr;
+        }
+
+        Expr optionalExpression() throws IOException {
+            // the tags of a chain of binary operators come in a row, see visitBinaryExpr()
+            int binaries = 0;
+            int tag = in.readUnsignedByte();
+            while (tag == BINARY) {
+                binaries++;
+                tag = in.readUnsignedByte();
+            }
+            if (binaries == 0)
+                return node(tag);
+
+            Expr left = node(tag);
+            if (left == null)
+                throw new IOException("Missing expression.");
+            for (int i = 0; i < binaries; i++) {
+                Token operator = token();
+                left = new Expr.Binary(left, operator, expression());
+            }
+            return left;
+        }
+
+        // any expression but a binary one, its tag is read already
+        private Expr node(int tag) throws IOException {
+            switch (tag) {
+                case NONE:
+                    return null;
+                case GROUPING:
+                    return new Expr.Grouping(expression());
+                case LITERAL:
+                    return new Expr.Literal(value());
+                case UNARY: {
+                    Token operator = token();
+                    return new Expr.Unary(operator, expression());
+                }
+                case VARIABLE:
+                    return new Expr.Variable(token());
+                case CALL: {
+                    Expr callee = expression();
+                    Token paren = token();
+                    int count = readVarint(in);
+                    List<Expr> arguments = new ArrayList<>(Math.min(count, 255));
+                    for (int i = 0; i < count; i++)
+                        arguments.add(expression());
+                    return new Expr.Call(callee, paren, arguments);
+                }
+                default:
+                    throw new IOException("Unknown expression tag " + tag + ".");
+            }
+        }
+
+        Token token() throws IOException {
+            int type = in.readUnsignedByte();
+            if (type >= TYPES.length)
+                throw new IOException("Unknown token type " + type + ".");
+            String lexeme = string();
+            int line = readVarint(in);
+            if (TYPES[type] != TokenType.IDENTIFIER)
+                return new Token(TYPES[type], lexeme, null, line);
+            int symbol = symbols.intern(lexeme);
+            return new Token(TYPES[type], symbols.name(symbol), null, line, symbol);
+        }
+
+        Object value() throws IOException {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case NIL:
+                    return null;
+                case TRUE:
+                    return true;
+                case FALSE:
+                    return false;
+                case NUMBER:
+                    return in.readDouble();
+                case STRING:
+                    return symbols.string(string());
+                default:
+                    throw new IOException("Unknown value tag " + tag + ".");
+            }
+        }
+
+        String string() throws IOException {
+            int index = readVarint(in);
+            if (index < strings.size())
+                return strings.get(index);
+            if (index != strings.size())
+                throw new IOException("Bad string index " + index + ".");
+            byte[] bytes = new byte[readVarint(in)];
+            in.readFully(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(value);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.saivishnu.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The BatchRunner class runs many scripts in one JVM, several at a time on a
+ * fixed pool of worker threads.
+ * Each script gets its own Session (globals, error flags, output), so they
+ * can't affect each other. Output is collected per script and printed in the
+ * order the scripts were given, followed by a summary with the exit status and
+ * time of every script.
+ */
+class BatchRunner {
+    private final Options options;
+
+    // what running one script left behind
+    private static class Result {
+        final Path path;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status;
+        long nanos;
+
+        Result(Path path) {
+            this.path = path;
+        }
+    }
+
+    BatchRunner(Options options) {
+        this.options = options;
+    }
+
+    // scripts named on the command line, directories stand for the .lox files in them
+    static List<Path> expand(List<Path> arguments) throws IOException {
+        List<Path> scripts = new ArrayList<>();
+        for (Path argument : arguments) {
+            if (!Files.isDirectory(argument)) {
+                scripts.add(argument);
+                continue;
+            }
+            List<Path> inDirectory = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(argument, "*.lox")) {
+                for (Path file : files)
+                    inDirectory.add(file);
+            }
+            inDirectory.sort(null);
+            scripts.addAll(inDirectory);
+        }
+        return scripts;
+    }
+
+    // run every script and return the worst exit status
+    int run(List<Path> scripts) {
+        long start = System.nanoTime();
+        int workers = Math.min(options.jobs, Math.max(1, scripts.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<Result>> pending = new ArrayList<>();
+        for (Path script : scripts)
+            pending.add(pool.submit(() -> runScript(script)));
+        pool.shutdown();
+
+        // print in the order the scripts were given, as soon as each one is done
+        List<Result> results = new ArrayList<>();
+        for (Future<Result> future : pending) {
+            Result result = await(future);
+            results.add(result);
+            System.out.println("==> " + result.path + " <==");
+            System.out.write(result.out.toByteArray(), 0, result.out.size());
+            System.out.flush();
+            System.err.write(result.err.toByteArray(), 0, result.err.size());
+            System.err.flush();
+        }
+        long wall = System.nanoTime() - start;
+
+        int worst = 0;
+        int failed = 0;
+        System.err.println("[batch] " + scripts.size() + " scripts on " + workers + " workers in "
+                + millis(wall) + " ms");
+        for (Result result : results) {
+            System.err.println("[batch]   " + result.path + "  exit " + result.status + "  " + millis(result.nanos)
+                    + " ms");
+            worst = Math.max(worst, result.status);
+            if (result.status != 0)
+                failed++;
+        }
+        System.err.println("[batch] " + (results.size() - failed) + " ok, " + failed + " failed");
+        return worst;
+    }
+
+    private Result runScript(Path script) throws UnsupportedEncodingException {
+        Result result = new Result(script);
+        long start = System.nanoTime();
+        PrintStream err = new PrintStream(result.err, true, "UTF-8");
+        Session session = new Session(options, result.out, err);
+        try {
+            session.runFile(script);
+            result.status = session.reporter.exitCode();
+        } catch (IOException error) {
+            err.println("Could not read " + script + ": " + error.getMessage());
+            // EX_NOINPUT
+            result.status = 66;
+        } catch (RuntimeException | StackOverflowError error) {
+            // a crash in one script must not take the others down
+            error.printStackTrace(err);
+            result.status = 70;
+        } finally {
+            // flushes the output and stops the sink's thread, whatever happened
+            session.close();
+        }
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    private static Result await(Future<Result> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(error);
+        } catch (ExecutionException error) {
+            throw new IllegalStateException(error.getCause());
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f", nanos / 1e6);
+    }
+}
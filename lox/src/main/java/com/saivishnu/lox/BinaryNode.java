@@ -0,0 +1,225 @@
+package com.saivishnu.lox;
+
+/**
+ * The BinaryNode class decides how an Expr.Binary site is executed.
+ * A site starts out uninitialized and runs the generic operation while it
+ * watches the operand types. After a few executions it rewrites itself
+ * (expr.node) into a node specialized for what it has seen, e.g. a numeric
+ * add with a single guard. If the guard ever fails the site falls back to the
+ * generic node for good, so it can't flip back and forth.
+ * Nodes follow the Interpreter's unboxed protocol (see evaluateNumber()).
+ */
+abstract class BinaryNode {
+
+    // executions observed before a site specializes
+    static final int SPECIALIZE_AFTER = 3;
+
+    // the generic node has no state, so every site can share it
+    static final BinaryNode GENERIC = new Generic();
+
+    // run the site: both operands, left first, then combine() them. every node has its
+    // own copy, so the JIT sees a single combine() behind each one
+    abstract double execute(Interpreter interpreter, Expr.Binary expr);
+
+    // the operator on operands that are evaluated already, by execute() or by a chain (see Interpreter)
+    abstract double combine(Interpreter interpreter, Expr.Binary expr,
+            double left, Object leftValue, double right, Object rightValue);
+
+    // collects operand types, then replaces itself
+    static class Uninitialized extends BinaryNode {
+        private int executions = 0;
+        private boolean onlyNumbers = true;
+        private boolean onlyStrings = true;
+
+        @Override
+        double execute(Interpreter interpreter, Expr.Binary expr) {
+            double left = interpreter.evaluateNumber(expr.left);
+            Object leftValue = interpreter.takeNotNumber();
+            double right = interpreter.evaluateNumber(expr.right);
+            Object rightValue = interpreter.takeNotNumber();
+            return combine(interpreter, expr, left, leftValue, right, rightValue);
+        }
+
+        @Override
+        double combine(Interpreter interpreter, Expr.Binary expr,
+                double left, Object leftValue, double right, Object rightValue) {
+            onlyNumbers &= leftValue == Interpreter.NUMBER && rightValue == Interpreter.NUMBER;
+            onlyStrings &= Rope.isString(leftValue) && Rope.isString(rightValue);
+            if (++executions >= SPECIALIZE_AFTER)
+                expr.node = specialize(expr.operator.type, onlyNumbers, onlyStrings);
+
+            return interpreter.binaryNumber(expr.operator, left, leftValue, right, rightValue);
+        }
+    }
+
+    // pick the node for an operator and the operand types seen so far
+    static BinaryNode specialize(TokenType operator, boolean onlyNumbers, boolean onlyStrings) {
+        if (onlyNumbers) {
+            switch (operator) {
+                case MINUS:
+                    return new Subtract();
+                case PLUS:
+                    return new Add();
+                case SLASH:
+                    return new Divide();
+                case STAR:
+                    return new Multiply();
+                case GREATER:
+                    return new Greater();
+                case GREATER_EQUAL:
+                    return new GreaterEqual();
+                case LESS:
+                    return new Less();
+                case LESS_EQUAL:
+                    return new LessEqual();
+                case EQUAL_EQUAL:
+                    return new NumberEqual(false);
+                case BANG_EQUAL:
+                    return new NumberEqual(true);
+                default:
+                    break;
+            }
+        }
+        if (onlyStrings && operator == TokenType.PLUS)
+            return new Concat();
+        return GENERIC;
+    }
+
+    // no assumptions, same as the Interpreter without specialization
+    static class Generic extends BinaryNode {
+        @Override
+        double execute(Interpreter interpreter, Expr.Binary expr) {
+            double left = interpreter.evaluateNumber(expr.left);
+            Object leftValue = interpreter.takeNotNumber();
+            double right = interpreter.evaluateNumber(expr.right);
+            Object rightValue = interpreter.takeNotNumber();
+            return combine(interpreter, expr, left, leftValue, right, rightValue);
+        }
+
+        @Override
+        double combine(Interpreter interpreter, Expr.Binary expr,
+                double left, Object leftValue, double right, Object rightValue) {
+            return interpreter.binaryNumber(expr.operator, left, leftValue, right, rightValue);
+        }
+    }
+
+    // base of the nodes that only handle two numbers
+    abstract static class NumberNode extends BinaryNode {
+        @Override
+        final double execute(Interpreter interpreter, Expr.Binary expr) {
+            double left = interpreter.evaluateNumber(expr.left);
+            Object leftValue = interpreter.takeNotNumber();
+            double right = interpreter.evaluateNumber(expr.right);
+            Object rightValue = interpreter.takeNotNumber();
+            return combine(interpreter, expr, left, leftValue, right, rightValue);
+        }
+
+        @Override
+        final double combine(Interpreter interpreter, Expr.Binary expr,
+                double left, Object leftValue, double right, Object rightValue) {
+            // the single guard: both sides really were numbers
+            if (leftValue == Interpreter.NUMBER && rightValue == Interpreter.NUMBER)
+                return apply(interpreter, left, right);
+
+            // assumption broken, despecialize and finish with the values we already have
+            expr.node = GENERIC;
+            return interpreter.binaryNumber(expr.operator, left, leftValue, right, rightValue);
+        }
+
+        abstract double apply(Interpreter interpreter, double left, double right);
+    }
+
+    static class Subtract extends NumberNode {
+        @Override
+        double apply(Interpreter interpreter, double left, double right) {
+            return left - right;
+        }
+    }
+
+    static class Add extends NumberNode {
+        @Override
+        double apply(Interpreter interpreter, double left, double right) {
+            return left + right;
+        }
+    }
+
+    static class Divide extends NumberNode {
+        @Override
+        double apply(Interpreter interpreter, double left, double right) {
+            return left / right;
+        }
+    }
+
+    static class Multiply extends NumberNode {
+        @Override
+        double apply(Interpreter interpreter, double left, double right) {
+            return left * right;
+        }
+    }
+
+    static class Greater extends NumberNode {
+        @Override
+        double apply(Interpreter interpreter, double left, double right) {
+            return interpreter.notANumber(left > right);
+        }
+    }
+
+    static class GreaterEqual extends NumberNode {
+        @Override
+        double apply(Interpreter interpreter, double left, double right) {
+            return interpreter.notANumber(left >= right);
+        }
+    }
+
+    static class Less extends NumberNode {
+        @Override
+        double apply(Interpreter interpreter, double left, double right) {
+            return interpreter.notANumber(left < right);
+        }
+    }
+
+    static class LessEqual extends NumberNode {
+        @Override
+        double apply(Interpreter interpreter, double left, double right) {
+            return interpreter.notANumber(left <= right);
+        }
+    }
+
+    // == and != on numbers without boxing. comparing the bits matches Double.equals(),
+    // which is what isEqual() uses (NaN equals NaN, 0 and -0 differ)
+    static class NumberEqual extends NumberNode {
+        private final boolean negate;
+
+        NumberEqual(boolean negate) {
+            this.negate = negate;
+        }
+
+        @Override
+        double apply(Interpreter interpreter, double left, double right) {
+            boolean equal = Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+            return interpreter.notANumber(equal != negate);
+        }
+    }
+
+    // string + string
+    static class Concat extends BinaryNode {
+        @Override
+        double execute(Interpreter interpreter, Expr.Binary expr) {
+            double left = interpreter.evaluateNumber(expr.left);
+            Object leftValue = interpreter.takeNotNumber();
+            double right = interpreter.evaluateNumber(expr.right);
+            Object rightValue = interpreter.takeNotNumber();
+            return combine(interpreter, expr, left, leftValue, right, rightValue);
+        }
+
+        @Override
+        double combine(Interpreter interpreter, Expr.Binary expr,
+                double left, Object leftValue, double right, Object rightValue) {
+            if (Rope.isString(leftValue) && Rope.isString(rightValue))
+                return interpreter.notANumber(Rope.concat(leftValue, rightValue));
+
+            expr.node = GENERIC;
+            return interpreter.binaryNumber(expr.operator, left, leftValue, right, rightValue);
+        }
+    }
+}
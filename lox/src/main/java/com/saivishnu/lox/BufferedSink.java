@@ -0,0 +1,314 @@
+package com.saivishnu.lox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The BufferedSink class collects printed lines, already encoded, in one large
+ * byte buffer that is reused for the whole run. The underlying stream only
+ * sees a write when the flush policy says so:
+ *
+ * EXIT      when the buffer is full and when the run ends
+ * SIZE      every flushSize bytes (and when the run ends)
+ * INTERVAL  at least every interval milliseconds while there is output waiting
+ *
+ * With async on, full buffers are handed to a writer thread and printing goes
+ * on in a second buffer, so a slow stream doesn't hold up the script. There is
+ * one writer and it writes buffers in the order they were filled, so the
+ * output comes out in the order it was printed.
+ */
+class BufferedSink implements PrintSink {
+
+    enum Flush {
+        EXIT, SIZE, INTERVAL
+    }
+
+    static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final Charset charset;
+    // true if ASCII text can be copied into the buffer char by char
+    private final boolean asciiCompatible;
+    private final Flush policy;
+    private final int flushSize;
+    private final long intervalNanos;
+    // null when writes happen on the printing thread
+    private final Writer writer;
+    // flushes a buffer that has been waiting too long, INTERVAL only
+    private final ScheduledExecutorService timer;
+
+    private byte[] buffer;
+    private int count = 0;
+    // reused for numbers that aren't plain integers
+    private final StringBuilder digits = new StringBuilder(NumberText.MAX_LENGTH);
+    private long lastFlush = System.nanoTime();
+
+    BufferedSink(OutputStream out, Charset charset, Flush policy, int flushSize, long intervalMillis,
+            boolean async) {
+        this.out = out;
+        this.charset = charset;
+        this.asciiCompatible = isAsciiCompatible(charset);
+        this.policy = policy;
+        this.flushSize = flushSize;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.buffer = new byte[Math.max(DEFAULT_CAPACITY, flushSize)];
+        this.writer = async ? new Writer(buffer.length) : null;
+
+        if (policy == Flush.INTERVAL) {
+            timer = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "lox-print-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleAtFixedRate(this::flushIfDue, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            timer = null;
+        }
+    }
+
+    @Override
+    public synchronized void println(String text) {
+        if (!appendAscii(text))
+            append(text.getBytes(charset));
+        append(LINE_SEPARATOR);
+        lineDone();
+    }
+
+    // digits go straight into the buffer, no String in between
+    @Override
+    public synchronized void println(double number) {
+        if (!asciiCompatible) {
+            println(NumberText.toString(number));
+            return;
+        }
+        if (buffer.length - count < NumberText.MAX_LENGTH)
+            drain(false);
+
+        if (NumberText.isPlainIntegral(number)) {
+            count = NumberText.writeIntegral(number, buffer, count);
+        } else {
+            digits.setLength(0);
+            NumberText.append(digits, number);
+            for (int i = 0; i < digits.length(); i++)
+                buffer[count++] = (byte) digits.charAt(i);
+        }
+        append(LINE_SEPARATOR);
+        lineDone();
+    }
+
+    // a line was added, see if the policy wants it written
+    private void lineDone() {
+        if (policy == Flush.SIZE && count >= flushSize)
+            drain(true);
+        else if (policy == Flush.INTERVAL && System.nanoTime() - lastFlush >= intervalNanos)
+            drain(true);
+    }
+
+    @Override
+    public void flush() {
+        synchronized (this) {
+            drain(true);
+        }
+        // outside the lock, so other threads can keep printing meanwhile
+        if (writer != null)
+            writer.await();
+    }
+
+    @Override
+    public void close() {
+        if (timer != null)
+            timer.shutdownNow();
+        flush();
+        if (writer != null)
+            writer.stop();
+    }
+
+    private synchronized void flushIfDue() {
+        if (count > 0 && System.nanoTime() - lastFlush >= intervalNanos)
+            drain(true);
+    }
+
+    /*
+     * the common case: the text is ASCII, copy it in without encoding it into a
+     * new array first. false (with nothing added) if it has to be encoded.
+     */
+    private boolean appendAscii(String text) {
+        int length = text.length();
+        if (!asciiCompatible || length > buffer.length)
+            return false;
+        if (length > buffer.length - count)
+            drain(false);
+
+        byte[] bytes = buffer;
+        int position = count;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80)
+                return false;
+            bytes[position++] = (byte) c;
+        }
+        count = position;
+        return true;
+    }
+
+    private void append(byte[] bytes) {
+        if (bytes.length > buffer.length - count)
+            drain(false);
+        if (bytes.length > buffer.length) {
+            // doesn't fit even in an empty buffer, send it on as it is
+            if (writer == null)
+                write(bytes, bytes.length, false);
+            else
+                writer.submitUnbuffered(bytes);
+            return;
+        }
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+    }
+
+    // send the buffer on, and flush the stream too if asked
+    private void drain(boolean flush) {
+        if (writer == null)
+            write(buffer, count, flush);
+        else
+            buffer = writer.submit(buffer, count, flush);
+        count = 0;
+        lastFlush = System.nanoTime();
+    }
+
+    private void write(byte[] bytes, int length, boolean flush) {
+        try {
+            if (length > 0)
+                out.write(bytes, 0, length);
+            if (flush)
+                out.flush();
+        } catch (IOException error) {
+            // like PrintStream, a failing stream doesn't stop the script
+        }
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        byte[] ascii = new byte[0x80];
+        for (int i = 0; i < ascii.length; i++)
+            ascii[i] = (byte) i;
+        return Arrays.equals(new String(ascii, StandardCharsets.US_ASCII).getBytes(charset), ascii);
+    }
+
+    // a filled buffer on its way to the writer thread
+    private static class Batch {
+        final byte[] bytes;
+        final int length;
+        final boolean flush;
+        // false for arrays that don't belong to the buffer pool
+        final boolean reuse;
+        // counted down once everything before it is written
+        final CountDownLatch written;
+
+        Batch(byte[] bytes, int length, boolean flush, boolean reuse, CountDownLatch written) {
+            this.bytes = bytes;
+            this.length = length;
+            this.flush = flush;
+            this.reuse = reuse;
+            this.written = written;
+        }
+    }
+
+    // the background writer: one thread, one queue, so order is kept
+    private class Writer implements Runnable {
+        private final Batch stop = new Batch(null, 0, false, false, null);
+        private final BlockingQueue<Batch> pending = new LinkedBlockingQueue<>();
+        // the second buffer, printing goes on in it while the first is written
+        private final BlockingQueue<byte[]> spare = new ArrayBlockingQueue<>(1);
+        private final Thread thread;
+
+        Writer(int capacity) {
+            spare.add(new byte[capacity]);
+            thread = new Thread(this, "lox-print-writer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /*
+         * hand a buffer over and get an empty one back, waits while the other
+         * buffer is still being written. the spare is taken first, there is only
+         * room for one in the queue when the writer gives this one back.
+         */
+        byte[] submit(byte[] bytes, int length, boolean flush) {
+            byte[] next = takeSpare();
+            pending.add(new Batch(bytes, length, flush, true, null));
+            return next;
+        }
+
+        private byte[] takeSpare() {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return spare.take();
+                    } catch (InterruptedException error) {
+                        interrupted = true;
+                    }
+                }
+            } finally {
+                if (interrupted)
+                    Thread.currentThread().interrupt();
+            }
+        }
+
+        void submitUnbuffered(byte[] bytes) {
+            pending.add(new Batch(bytes, bytes.length, false, false, null));
+        }
+
+        // wait until everything submitted so far is written
+        void await() {
+            CountDownLatch written = new CountDownLatch(1);
+            pending.add(new Batch(null, 0, false, false, written));
+            try {
+                written.await();
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void stop() {
+            pending.add(stop);
+            try {
+                thread.join();
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Batch batch;
+                try {
+                    batch = pending.take();
+                } catch (InterruptedException error) {
+                    continue;
+                }
+                if (batch == stop)
+                    return;
+                if (batch.bytes != null)
+                    write(batch.bytes, batch.length, batch.flush);
+                if (batch.reuse)
+                    spare.add(batch.bytes);
+                if (batch.written != null)
+                    batch.written.countDown();
+            }
+        }
+    }
+}
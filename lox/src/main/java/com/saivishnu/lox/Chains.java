@@ -0,0 +1,35 @@
+package com.saivishnu.lox;
+
+/**
+ * The Chains class takes apart chains of binary operators.
+ * a + b + c is (a + b) + c, and generated scripts have chains like it
+ * thousands of operators long: passes walk them in a loop over of() instead
+ * of a call per operator, which would overflow the Java stack.
+ */
+final class Chains {
+
+    /*
+     * chains longer than this run in a loop in the backends too, shorter ones
+     * run with a call per operator like any other node, which is faster. the
+     * Parser counts the calls towards its nesting limit.
+     */
+    static final int LONG = 8;
+
+    private Chains() {
+    }
+
+    // expr and the binary operators down its left side, innermost first
+    static Expr.Binary[] of(Expr.Binary expr) {
+        int length = 1;
+        for (Expr link = expr.left; link instanceof Expr.Binary; link = ((Expr.Binary) link).left)
+            length++;
+        Expr.Binary[] chain = new Expr.Binary[length];
+        Expr.Binary link = expr;
+        for (int i = length - 1; i >= 0; i--) {
+            chain[i] = link;
+            if (i > 0)
+                link = (Expr.Binary) link.left;
+        }
+        return chain;
+    }
+}
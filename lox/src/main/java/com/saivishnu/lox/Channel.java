@@ -0,0 +1,37 @@
+package com.saivishnu.lox;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+
+/**
+ * The Channel class is how spawned tasks talk to each other.
+ * It is a bounded queue: send waits while the channel is full and receive
+ * waits while it is empty. A channel with capacity 0 has no buffer at all, a
+ * send waits until a receive takes the value (and the other way around).
+ * Waiting on a virtual thread doesn't hold on to a carrier thread.
+ */
+class Channel {
+    // blocking queues can't hold null, nil goes through as this instead
+    private static final Object NIL = new Object();
+
+    private final BlockingQueue<Object> queue;
+
+    Channel(int capacity) {
+        this.queue = capacity == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(capacity);
+    }
+
+    void send(Object value) throws InterruptedException {
+        queue.put(value == null ? NIL : value);
+    }
+
+    Object receive() throws InterruptedException {
+        Object value = queue.take();
+        return value == NIL ? null : value;
+    }
+
+    @Override
+    public String toString() {
+        return "<channel>";
+    }
+}
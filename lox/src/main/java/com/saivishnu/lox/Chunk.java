@@ -0,0 +1,56 @@
+package com.saivishnu.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Chunk class holds the bytecode produced by the Compiler.
+ * It contains the instructions, the constant pool and the token of every
+ * instruction (used only for reporting runtime errors).
+ */
+class Chunk {
+    byte[] code = new byte[64];
+    // token of the instruction at the same index, null for operand bytes
+    Token[] tokens = new Token[64];
+    int count = 0;
+    // the deepest the operand stack can get while running this chunk
+    int maxStack = 0;
+
+    private final List<Object> constants = new ArrayList<>();
+    // same value -> same slot, so repeated literals don't grow the pool
+    private final Map<Object, Integer> constantIndex = new HashMap<>();
+    private Object[] constantArray;
+
+    // append a byte to the chunk
+    void write(int value, Token token) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            tokens = Arrays.copyOf(tokens, count * 2);
+        }
+        code[count] = (byte) value;
+        tokens[count] = token;
+        count++;
+    }
+
+    // add a value to the constant pool and return its index
+    int addConstant(Object value) {
+        Integer index = constantIndex.get(value);
+        if (index != null)
+            return index;
+
+        constants.add(value);
+        constantArray = null;
+        constantIndex.put(value, constants.size() - 1);
+        return constants.size() - 1;
+    }
+
+    // the constant pool as an array so the VM doesn't go through List.get()
+    Object[] constants() {
+        if (constantArray == null)
+            constantArray = constants.toArray();
+        return constantArray;
+    }
+}
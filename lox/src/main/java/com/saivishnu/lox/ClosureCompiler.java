@@ -0,0 +1,284 @@
+package com.saivishnu.lox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The ClosureCompiler class turns the statements produced by the Parser into
+ * a tree of Java lambdas for the ClosureRuntime (--closure).
+ * Each node is compiled once into a closure that already knows what it does
+ * and holds its children's closures, e.g. a Binary MINUS becomes a lambda
+ * that runs its two operands and subtracts. Running the tree is then a chain
+ * of direct calls, without the visitor's accept() double dispatch or the
+ * switch on the operator the Interpreter does on every evaluation, and
+ * groupings don't exist any more at all.
+ * Expressions follow the Interpreter's unboxed protocol (see
+ * Interpreter.evaluateNumber()): a closure returns a double and parks a value
+ * that is not a number in the runtime, so arithmetic doesn't box.
+ */
+class ClosureCompiler implements Expr.Visitor<ClosureCompiler.Eval>, Stmt.Visitor<ClosureCompiler.Exec> {
+
+    // a compiled expression. a value that is not a number is parked with runtime.notANumber()
+    interface Eval {
+        double eval(ClosureRuntime runtime);
+    }
+
+    // a compiled statement
+    interface Exec {
+        void exec(ClosureRuntime runtime);
+    }
+
+    Exec compile(List<Stmt> statements) {
+        if (statements.size() == 1)
+            return statements.get(0).accept(this);
+        Exec[] compiled = new Exec[statements.size()];
+        for (int i = 0; i < compiled.length; i++)
+            compiled[i] = statements.get(i).accept(this);
+        return runtime -> {
+            for (Exec statement : compiled)
+                statement.exec(runtime);
+        };
+    }
+
+    @Override
+    public Exec visitExpressionStmt(Stmt.Expression stmt) {
+        Eval expression = stmt.expression.accept(this);
+        return runtime -> {
+            expression.eval(runtime);
+            // the value is thrown away, parked or not
+            runtime.takeNotNumber();
+        };
+    }
+
+    @Override
+    public Exec visitPrintStmt(Stmt.Print stmt) {
+        Eval expression = stmt.expression.accept(this);
+        return runtime -> {
+            // numbers stay unboxed all the way to the sink
+            double number = expression.eval(runtime);
+            Object value = runtime.takeNotNumber();
+            if (value == Interpreter.NUMBER)
+                runtime.out.println(number);
+            else
+                runtime.out.println(Interpreter.stringify(value));
+        };
+    }
+
+    @Override
+    public Exec visitSpawnStmt(Stmt.Spawn stmt) {
+        Exec body = compile(Collections.singletonList(stmt.body));
+        return runtime -> runtime.spawn(body);
+    }
+
+    @Override
+    public Exec visitVarStmt(Stmt.Var stmt) {
+        int slot = stmt.slot;
+        // a variable without an initializer is nil
+        if (stmt.initializer == null)
+            return runtime -> runtime.environment.define(slot, null);
+        Eval initializer = stmt.initializer.accept(this);
+        return runtime -> runtime.environment.define(slot, runtime.value(initializer));
+    }
+
+    @Override
+    public Eval visitLiteralExpr(Expr.Literal expr) {
+        Object value = expr.value;
+        if (value instanceof Double) {
+            double number = (double) value;
+            return runtime -> number;
+        }
+        return runtime -> runtime.notANumber(value);
+    }
+
+    @Override
+    public Eval visitGroupingExpr(Expr.Grouping expr) {
+        // a grouping only mattered to the parser
+        return expr.expression.accept(this);
+    }
+
+    @Override
+    public Eval visitVariableExpr(Expr.Variable expr) {
+        int depth = expr.depth;
+        int slot = expr.slot;
+        Token name = expr.name;
+        return runtime -> runtime.notANumber(runtime.environment.get(depth, slot, name));
+    }
+
+    @Override
+    public Eval visitCallExpr(Expr.Call expr) {
+        Eval callee = expr.callee.accept(this);
+        Eval[] arguments = new Eval[expr.arguments.size()];
+        for (int i = 0; i < arguments.length; i++)
+            arguments[i] = expr.arguments.get(i).accept(this);
+        Token paren = expr.paren;
+        return runtime -> {
+            // the callee first, then the arguments from left to right
+            Object function = runtime.value(callee);
+            List<Object> values = new ArrayList<>(arguments.length);
+            for (Eval argument : arguments)
+                values.add(runtime.value(argument));
+            return runtime.notANumber(Interpreter.call(paren, function, values));
+        };
+    }
+
+    @Override
+    public Eval visitUnaryExpr(Expr.Unary expr) {
+        Eval right = expr.right.accept(this);
+        Token operator = expr.operator;
+        switch (operator.type) {
+            case BANG:
+                return runtime -> runtime.notANumber(!Interpreter.isTruthy(runtime.value(right)));
+            case MINUS:
+                return runtime -> {
+                    double value = right.eval(runtime);
+                    Object notNumber = runtime.takeNotNumber();
+                    // it is never a Double here, so this throws
+                    if (notNumber != Interpreter.NUMBER)
+                        Interpreter.checkNumberOperand(operator, notNumber);
+                    return -value;
+                };
+            default:
+                throw new IllegalStateException("Unknown unary operator " + operator.type + ".");
+        }
+    }
+
+    @Override
+    public Eval visitBinaryExpr(Expr.Binary expr) {
+        Expr.Binary[] chain = Chains.of(expr);
+        if (chain.length > Chains.LONG)
+            return chain(chain);
+        return binary(expr.left.accept(this), expr.operator, expr.right.accept(this));
+    }
+
+    /*
+     * one lambda per operator. each checks that both operands were numbers
+     * and does the operation right there; anything else (strings, equality of
+     * other values, errors) goes to the Interpreter's generic operation.
+     */
+    private static Eval binary(Eval left, Token operator, Eval right) {
+        switch (operator.type) {
+            case MINUS:
+                return runtime -> {
+                    double a = left.eval(runtime);
+                    Object aValue = runtime.takeNotNumber();
+                    double b = right.eval(runtime);
+                    Object bValue = runtime.takeNotNumber();
+                    if (aValue == Interpreter.NUMBER && bValue == Interpreter.NUMBER)
+                        return a - b;
+                    return runtime.binary(operator, a, aValue, b, bValue);
+                };
+            case PLUS:
+                return runtime -> {
+                    double a = left.eval(runtime);
+                    Object aValue = runtime.takeNotNumber();
+                    double b = right.eval(runtime);
+                    Object bValue = runtime.takeNotNumber();
+                    if (aValue == Interpreter.NUMBER && bValue == Interpreter.NUMBER)
+                        return a + b;
+                    return runtime.binary(operator, a, aValue, b, bValue);
+                };
+            case SLASH:
+                return runtime -> {
+                    double a = left.eval(runtime);
+                    Object aValue = runtime.takeNotNumber();
+                    double b = right.eval(runtime);
+                    Object bValue = runtime.takeNotNumber();
+                    if (aValue == Interpreter.NUMBER && bValue == Interpreter.NUMBER)
+                        return a / b;
+                    return runtime.binary(operator, a, aValue, b, bValue);
+                };
+            case STAR:
+                return runtime -> {
+                    double a = left.eval(runtime);
+                    Object aValue = runtime.takeNotNumber();
+                    double b = right.eval(runtime);
+                    Object bValue = runtime.takeNotNumber();
+                    if (aValue == Interpreter.NUMBER && bValue == Interpreter.NUMBER)
+                        return a * b;
+                    return runtime.binary(operator, a, aValue, b, bValue);
+                };
+            case GREATER:
+                return runtime -> {
+                    double a = left.eval(runtime);
+                    Object aValue = runtime.takeNotNumber();
+                    double b = right.eval(runtime);
+                    Object bValue = runtime.takeNotNumber();
+                    if (aValue == Interpreter.NUMBER && bValue == Interpreter.NUMBER)
+                        return runtime.notANumber(a > b);
+                    return runtime.binary(operator, a, aValue, b, bValue);
+                };
+            case GREATER_EQUAL:
+                return runtime -> {
+                    double a = left.eval(runtime);
+                    Object aValue = runtime.takeNotNumber();
+                    double b = right.eval(runtime);
+                    Object bValue = runtime.takeNotNumber();
+                    if (aValue == Interpreter.NUMBER && bValue == Interpreter.NUMBER)
+                        return runtime.notANumber(a >= b);
+                    return runtime.binary(operator, a, aValue, b, bValue);
+                };
+            case LESS:
+                return runtime -> {
+                    double a = left.eval(runtime);
+                    Object aValue = runtime.takeNotNumber();
+                    double b = right.eval(runtime);
+                    Object bValue = runtime.takeNotNumber();
+                    if (aValue == Interpreter.NUMBER && bValue == Interpreter.NUMBER)
+                        return runtime.notANumber(a < b);
+                    return runtime.binary(operator, a, aValue, b, bValue);
+                };
+            case LESS_EQUAL:
+                return runtime -> {
+                    double a = left.eval(runtime);
+                    Object aValue = runtime.takeNotNumber();
+                    double b = right.eval(runtime);
+                    Object bValue = runtime.takeNotNumber();
+                    if (aValue == Interpreter.NUMBER && bValue == Interpreter.NUMBER)
+                        return runtime.notANumber(a <= b);
+                    return runtime.binary(operator, a, aValue, b, bValue);
+                };
+            case EQUAL_EQUAL:
+            case BANG_EQUAL:
+                boolean negate = operator.type == TokenType.BANG_EQUAL;
+                return runtime -> {
+                    double a = left.eval(runtime);
+                    Object aValue = runtime.takeNotNumber();
+                    double b = right.eval(runtime);
+                    Object bValue = runtime.takeNotNumber();
+                    // comparing the bits matches Double.equals(), like isEqual() does
+                    if (aValue == Interpreter.NUMBER && bValue == Interpreter.NUMBER)
+                        return runtime.notANumber(
+                                (Double.doubleToLongBits(a) == Double.doubleToLongBits(b)) != negate);
+                    return runtime.binary(operator, a, aValue, b, bValue);
+                };
+            default:
+                throw new IllegalStateException("Unknown binary operator " + operator.type + ".");
+        }
+    }
+
+    /*
+     * a + b + c + ...: with the lambdas calling down the left side one
+     * operator at a time, long chains would overflow the Java stack. so a
+     * long chain (see Chains.of()) runs in a loop instead: each operator
+     * is the same lambda as above, but its left operand is CHAINED, the value
+     * the loop got so far.
+     */
+    private Eval chain(Expr.Binary[] chain) {
+        Eval first = chain[0].left.accept(this);
+        Eval[] links = new Eval[chain.length];
+        for (int i = 0; i < chain.length; i++)
+            links[i] = binary(CHAINED, chain[i].operator, chain[i].right.accept(this));
+        return runtime -> {
+            double value = first.eval(runtime);
+            for (Eval link : links) {
+                runtime.chain(value);
+                value = link.eval(runtime);
+            }
+            return value;
+        };
+    }
+
+    // the left operand of an operator in a chain, see chain()
+    private static final Eval CHAINED = ClosureRuntime::chained;
+}
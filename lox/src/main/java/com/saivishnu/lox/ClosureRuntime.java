@@ -0,0 +1,121 @@
+package com.saivishnu.lox;
+
+import java.util.Collections;
+
+/**
+ * The ClosureRuntime class runs the closures made by the ClosureCompiler, for
+ * --closure. It holds what the closures need while they run: the globals,
+ * where print goes, the tasks and the value parked by the unboxed protocol.
+ * Like the VM it shares the runtime semantics (truthiness, equality, error
+ * messages, printing) with the Interpreter, so every backend gives the same
+ * output.
+ */
+class ClosureRuntime {
+    // global variables by slot, kept between runs like the Interpreter's environment
+    final Environment environment;
+    // where print goes
+    final PrintSink out;
+    private final ErrorReporter reporter;
+    // tasks started by spawn, shared with the runtimes that run them
+    private final Tasks tasks;
+    // see Interpreter.evaluateNumber()
+    private Object notNumber = Interpreter.NUMBER;
+    // the value of a chain of binary operators so far, see ClosureCompiler.chain()
+    private double chained;
+    private Object chainedNotNumber = Interpreter.NUMBER;
+
+    ClosureRuntime(PrintSink out, ErrorReporter reporter) {
+        this(new Environment(), out, reporter, new Tasks());
+        Natives.define(environment);
+    }
+
+    // a runtime for a spawned task
+    private ClosureRuntime(Environment globals, PrintSink out, ErrorReporter reporter, Tasks tasks) {
+        this.environment = globals;
+        this.out = out;
+        this.reporter = reporter;
+        this.tasks = tasks;
+    }
+
+    void interpret(ClosureCompiler.Exec code) {
+        interpret(Collections.singletonList(code));
+    }
+
+    // run compiled statements one after the other
+    void interpret(Iterable<ClosureCompiler.Exec> code) {
+        Events.Execute event = new Events.Execute();
+        event.begin();
+        try {
+            for (ClosureCompiler.Exec statements : code)
+                statements.exec(this);
+        } catch (RuntimeError error) {
+            // what was printed before the error shows up before it
+            out.flush();
+            reporter.runtimeError(error);
+        }
+        // the run isn't over until every task it spawned is
+        tasks.await();
+        if (event.shouldCommit()) {
+            event.backend = "closure";
+            event.commit();
+        }
+    }
+
+    // the task gets a copy of the globals as they are right now, like in the Interpreter
+    void spawn(ClosureCompiler.Exec body) {
+        ClosureRuntime task = new ClosureRuntime(environment.copy(), out, reporter, tasks);
+        tasks.spawn(() -> task.runTask(body));
+    }
+
+    // body of a spawned task, its errors end only the task
+    private void runTask(ClosureCompiler.Exec body) {
+        try {
+            body.exec(this);
+        } catch (RuntimeError error) {
+            out.flush();
+            reporter.runtimeError(error);
+        }
+    }
+
+    // the value of a compiled expression as a regular (boxed) value
+    Object value(ClosureCompiler.Eval code) {
+        double number = code.eval(this);
+        Object value = takeNotNumber();
+        return value == Interpreter.NUMBER ? (Object) number : value;
+    }
+
+    // park a value that may not be a number for the caller of eval()
+    double notANumber(Object value) {
+        if (value instanceof Double)
+            return (double) value;
+        notNumber = value;
+        return 0;
+    }
+
+    // pick up the parked value (or NUMBER) and reset it
+    Object takeNotNumber() {
+        Object value = notNumber;
+        notNumber = Interpreter.NUMBER;
+        return value;
+    }
+
+    // hand the result of the last eval() to the next operator of a chain
+    void chain(double value) {
+        chained = value;
+        chainedNotNumber = takeNotNumber();
+    }
+
+    // the left operand of that operator, it takes it before its right operand runs
+    double chained() {
+        Object value = chainedNotNumber;
+        chainedNotNumber = Interpreter.NUMBER;
+        return value == Interpreter.NUMBER ? chained : notANumber(value);
+    }
+
+    // a binary operation on anything but two numbers, done the generic way
+    double binary(Token operator, double left, Object leftValue, double right, Object rightValue) {
+        return notANumber(Interpreter.binaryOperation(operator,
+                leftValue == Interpreter.NUMBER ? (Object) left : leftValue,
+                rightValue == Interpreter.NUMBER ? (Object) right : rightValue));
+    }
+}
@@ -0,0 +1,23 @@
+package com.saivishnu.lox;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The CompileException class is thrown by Engine.compile() when a source has
+ * syntax errors. It carries all of them, not only the first.
+ */
+public final class CompileException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final List<LoxError> errors;
+
+    CompileException(List<LoxError> errors) {
+        super(errors.get(0).toString());
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    public List<LoxError> errors() {
+        return errors;
+    }
+}
@@ -0,0 +1,222 @@
+package com.saivishnu.lox;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The Compiler class turns the statements produced by the Parser into a Chunk
+ * of bytecode for the VM.
+ * Every expression leaves exactly one value on the stack, every statement
+ * leaves the stack as it found it.
+ */
+class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    private final Chunk chunk = new Chunk();
+    // current depth of the operand stack, used to size the VM stack up front
+    private int stackDepth = 0;
+
+    Chunk compile(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            statement.accept(this);
+        }
+        emit(OpCode.RETURN, null, 0);
+        return chunk;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        stmt.expression.accept(this);
+        // the value of an expression statement is thrown away
+        emit(OpCode.POP, null, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        stmt.expression.accept(this);
+        emit(OpCode.PRINT, null, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitSpawnStmt(Stmt.Spawn stmt) {
+        // the body is a chunk of its own, the task runs it on a stack of its own
+        Chunk task = new Compiler().compile(Collections.singletonList(stmt.body));
+        int index = chunk.addConstant(task);
+        if (index > 0xFFFFFF)
+            throw new IllegalStateException("Too many constants in one chunk.");
+        chunk.write(OpCode.SPAWN, stmt.keyword);
+        chunk.write(index >> 16, null);
+        chunk.write(index >> 8, null);
+        chunk.write(index, null);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        if (stmt.initializer != null)
+            stmt.initializer.accept(this);
+        else
+            emit(OpCode.NIL, stmt.name, 1);
+
+        emitSlot(OpCode.DEFINE_GLOBAL, stmt.name, stmt.slot, -1);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        // left first, then right, same as the Interpreter. a + b + c + ... in a loop
+        Expr.Binary[] chain = Chains.of(expr);
+        chain[0].left.accept(this);
+        for (Expr.Binary link : chain) {
+            link.right.accept(this);
+            emitBinary(link.operator);
+        }
+        return null;
+    }
+
+    // the instruction for a binary operator, both operands are on the stack
+    private void emitBinary(Token operator) {
+        switch (operator.type) {
+            case GREATER:
+                emit(OpCode.GREATER, operator, -1);
+                break;
+            case GREATER_EQUAL:
+                emit(OpCode.GREATER_EQUAL, operator, -1);
+                break;
+            case LESS:
+                emit(OpCode.LESS, operator, -1);
+                break;
+            case LESS_EQUAL:
+                emit(OpCode.LESS_EQUAL, operator, -1);
+                break;
+            case MINUS:
+                emit(OpCode.SUBTRACT, operator, -1);
+                break;
+            case PLUS:
+                emit(OpCode.ADD, operator, -1);
+                break;
+            case SLASH:
+                emit(OpCode.DIVIDE, operator, -1);
+                break;
+            case STAR:
+                emit(OpCode.MULTIPLY, operator, -1);
+                break;
+            case BANG_EQUAL:
+                emit(OpCode.NOT_EQUAL, operator, -1);
+                break;
+            case EQUAL_EQUAL:
+                emit(OpCode.EQUAL, operator, -1);
+                break;
+            default:
+                // the Interpreter evaluates unknown operators to nil
+                emit(OpCode.POP, operator, -1);
+                emit(OpCode.POP, operator, -1);
+                emit(OpCode.NIL, operator, 1);
+                break;
+        }
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        expr.callee.accept(this);
+        for (Expr argument : expr.arguments)
+            argument.accept(this);
+
+        // the parser allows no more than 255 arguments, so the count fits in a byte
+        chunk.write(OpCode.CALL, expr.paren);
+        chunk.write(expr.arguments.size(), null);
+        // callee and arguments are replaced by the result
+        adjustStack(-expr.arguments.size());
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        // grouping only matters for the shape of the tree, there is nothing to emit
+        expr.expression.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value == null)
+            emit(OpCode.NIL, null, 1);
+        else if (Boolean.TRUE.equals(expr.value))
+            emit(OpCode.TRUE, null, 1);
+        else if (Boolean.FALSE.equals(expr.value))
+            emit(OpCode.FALSE, null, 1);
+        else
+            emitWithIndex(OpCode.CONSTANT, OpCode.CONSTANT_LONG, null, expr.value, 1);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        expr.right.accept(this);
+
+        switch (expr.operator.type) {
+            case BANG:
+                emit(OpCode.NOT, expr.operator, 0);
+                break;
+            case MINUS:
+                emit(OpCode.NEGATE, expr.operator, 0);
+                break;
+            default:
+                emit(OpCode.POP, expr.operator, -1);
+                emit(OpCode.NIL, expr.operator, 1);
+                break;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        emitSlot(OpCode.GET_GLOBAL, expr.name, expr.slot, 1);
+        return null;
+    }
+
+    // write a single instruction and track how it changes the stack depth
+    private void emit(byte op, Token token, int stackEffect) {
+        chunk.write(op, token);
+        adjustStack(stackEffect);
+    }
+
+    // write an instruction that takes a variable slot (u24) as operand
+    private void emitSlot(byte op, Token name, int slot, int stackEffect) {
+        if (slot > 0xFFFFFF)
+            throw new IllegalStateException("Too many variables in one chunk.");
+        chunk.write(op, name);
+        chunk.write(slot >> 16, null);
+        chunk.write(slot >> 8, null);
+        chunk.write(slot, null);
+        adjustStack(stackEffect);
+    }
+
+    /*
+     * write an instruction that takes a constant index as operand.
+     * u16 indexes use the short form, anything bigger needs the long form (u24).
+     */
+    private void emitWithIndex(byte shortOp, byte longOp, Token token, Object constant, int stackEffect) {
+        int index = chunk.addConstant(constant);
+        if (index <= 0xFFFF) {
+            chunk.write(shortOp, token);
+            chunk.write(index >> 8, null);
+            chunk.write(index, null);
+        } else if (index <= 0xFFFFFF) {
+            chunk.write(longOp, token);
+            chunk.write(index >> 16, null);
+            chunk.write(index >> 8, null);
+            chunk.write(index, null);
+        } else {
+            throw new IllegalStateException("Too many constants in one chunk.");
+        }
+        adjustStack(stackEffect);
+    }
+
+    private void adjustStack(int stackEffect) {
+        stackDepth += stackEffect;
+        if (stackDepth > chunk.maxStack)
+            chunk.maxStack = stackDepth;
+    }
+}
@@ -0,0 +1,46 @@
+package com.saivishnu.lox;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The Context class holds what one execution of a Program gets from the
+ * caller: values for global variables and where print statements go.
+ * A context is not meant to be shared between threads, make one per call.
+ */
+public final class Context {
+    final Map<String, Object> globals = new HashMap<>();
+    PrintStream out = null;
+
+    /**
+     * Sets a global variable before the program runs.
+     * The value must be null (nil), a Boolean, a Number (stored as a double)
+     * or a CharSequence (stored as a String).
+     */
+    public Context define(String name, Object value) {
+        globals.put(name, toLox(name, value));
+        return this;
+    }
+
+    /**
+     * Sends the output of print statements to a stream. Without one it is
+     * collected and returned by Result.output().
+     */
+    public Context output(PrintStream out) {
+        this.out = out;
+        return this;
+    }
+
+    // the runtime only knows nil, booleans, doubles and strings
+    private static Object toLox(String name, Object value) {
+        if (value == null || value instanceof Boolean || value instanceof Double || value instanceof String)
+            return value;
+        if (value instanceof Number)
+            return ((Number) value).doubleValue();
+        if (value instanceof CharSequence)
+            return value.toString();
+        throw new IllegalArgumentException(
+                "Global '" + name + "' can't be a " + value.getClass().getName() + ".");
+    }
+}
@@ -0,0 +1,124 @@
+package com.saivishnu.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Engine class is the entry point for running Lox from other JVM code.
+ * A source is compiled once into a Program, which can then be executed any
+ * number of times, from any number of threads at once. Every execution gets
+ * its own globals (seeded from a Context) and its own output, and nothing is
+ * printed to stdout or stderr: errors come back as LoxError objects.
+ *
+ * <pre>
+ * Engine engine = new Engine();
+ * Program program = engine.compile("print greeting + \" world\";");
+ * Result result = engine.execute(program, new Context().define("greeting", "hello"));
+ * result.output(); // "hello world\n"
+ * </pre>
+ */
+public final class Engine {
+
+    // marks a global that was never defined while collecting the results
+    private static final Object UNDEFINED = new Object();
+
+    /**
+     * Scans, parses and resolves a source.
+     *
+     * @throws CompileException with every syntax error in the source
+     */
+    public Program compile(String source) throws CompileException {
+        CollectingReporter reporter = new CollectingReporter();
+        SymbolTable symbols = new SymbolTable();
+        TokenBuffer tokens = new Scanner(Source.of(source), reporter, symbols).scan();
+        List<Stmt> statements = new Parser(tokens, reporter).parse();
+        if (reporter.hadError)
+            throw new CompileException(reporter.errors);
+
+        // a fresh resolver, slots only have to agree within one program
+        Resolver resolver = new Resolver(symbols);
+        resolver.resolve(statements);
+        // native functions aren't the caller's to set or read
+        Map<String, Integer> globals = resolver.globals();
+        for (String name : Natives.NAMES)
+            globals.remove(name);
+        return new Program(statements, globals);
+    }
+
+    /**
+     * Runs a compiled program with the globals and output of a context.
+     * A runtime error stops the program and is returned in the result, it is
+     * never thrown.
+     */
+    public Result execute(Program program, Context context) {
+        // globals the program doesn't mention are never looked at, skip them
+        Environment globals = new Environment();
+        for (Map.Entry<String, Object> global : context.globals.entrySet()) {
+            Integer slot = program.globals.get(global.getKey());
+            if (slot != null)
+                globals.define(slot, global.getValue());
+        }
+
+        // without a stream the output is captured for the result
+        ByteArrayOutputStream captured = null;
+        PrintSink out;
+        if (context.out == null) {
+            captured = new ByteArrayOutputStream();
+            out = new BufferedSink(captured, StandardCharsets.UTF_8, BufferedSink.Flush.EXIT, 0, 0, false);
+        } else {
+            out = PrintSink.of(context.out);
+        }
+
+        CollectingReporter reporter = new CollectingReporter();
+        new Interpreter(globals, out, reporter).interpret(program.statements);
+        out.close();
+
+        Map<String, Object> values = new HashMap<>();
+        for (Map.Entry<String, Integer> global : program.globals.entrySet()) {
+            Object value = globals.getOrDefault(global.getValue(), UNDEFINED);
+            // the caller gets a String, never a rope
+            if (value instanceof Rope)
+                value = value.toString();
+            if (value != UNDEFINED)
+                values.put(global.getKey(), value);
+        }
+
+        String output = captured == null ? null : captured.toString(StandardCharsets.UTF_8);
+        LoxError error = reporter.errors.isEmpty() ? null : reporter.errors.get(0);
+        return new Result(error, Collections.unmodifiableMap(values), output);
+    }
+
+    /** Same as {@code execute(program, new Context())}. */
+    public Result execute(Program program) {
+        return execute(program, new Context());
+    }
+
+    // keeps errors as objects instead of printing them
+    private static class CollectingReporter extends ErrorReporter {
+        final List<LoxError> errors = new ArrayList<>();
+
+        CollectingReporter() {
+            // nothing is printed, every method that would print is overridden
+            super(null);
+        }
+
+        @Override
+        synchronized void report(int line, String where, String message) {
+            errors.add(new LoxError(LoxError.Kind.SYNTAX, line, where, message));
+            hadError = true;
+            Events.error("syntax", line, message);
+        }
+
+        @Override
+        synchronized void runtimeError(RuntimeError error) {
+            errors.add(new LoxError(LoxError.Kind.RUNTIME, error.token.line, "", error.getMessage()));
+            hadRuntimeError = true;
+            Events.error("runtime", error.token.line, error.getMessage());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.saivishnu.lox;
+
+import java.util.Arrays;
+
+/**
+ * The Environment class stores the values of variables.
+ * Variables are not looked up by name at runtime: the Resolver gives every
+ * variable a slot up front, so an environment is just an array of values.
+ */
+class Environment {
+    // marks a slot that no variable has been defined in yet
+    private static final Object UNDEFINED = new Object();
+
+    // the environment this one is nested in, null for the globals
+    final Environment enclosing;
+    private Object[] values = newSlots(16);
+
+    Environment() {
+        this(null);
+    }
+
+    Environment(Environment enclosing) {
+        this.enclosing = enclosing;
+    }
+
+    // get the value in a slot of the environment depth levels up, or throw a
+    // runtime error if the variable hasn't been defined
+    Object get(int depth, int slot, Token name) {
+        Object[] slots = ancestor(depth).values;
+        if (slot < slots.length && slots[slot] != UNDEFINED)
+            return slots[slot];
+
+        throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+    }
+
+    // value in a slot of this environment, or the fallback if it hasn't been defined
+    Object getOrDefault(int slot, Object fallback) {
+        if (slot < values.length && values[slot] != UNDEFINED)
+            return values[slot];
+        return fallback;
+    }
+
+    // a snapshot of this environment's values, for a spawned task
+    Environment copy() {
+        Environment copy = new Environment(enclosing);
+        copy.values = values.clone();
+        return copy;
+    }
+
+    // define a new variable. redefining an existing variable is allowed
+    void define(int slot, Object value) {
+        if (slot >= values.length) {
+            int oldLength = values.length;
+            values = Arrays.copyOf(values, Math.max(slot + 1, oldLength * 2));
+            Arrays.fill(values, oldLength, values.length, UNDEFINED);
+        }
+        values[slot] = value;
+    }
+
+    private Environment ancestor(int depth) {
+        Environment environment = this;
+        for (int i = 0; i < depth; i++)
+            environment = environment.enclosing;
+        return environment;
+    }
+
+    private static Object[] newSlots(int size) {
+        Object[] slots = new Object[size];
+        Arrays.fill(slots, UNDEFINED);
+        return slots;
+    }
+}
@@ -0,0 +1,58 @@
+package com.saivishnu.lox;
+
+import java.io.PrintStream;
+
+/**
+ * The ErrorReporter class prints syntax and runtime errors and remembers that
+ * they happened.
+ * Every run has its own reporter, so scripts running side by side don't see
+ * each other's errors. Tasks spawned by a run share its reporter, so it can be
+ * used from several threads.
+ */
+class ErrorReporter {
+    private final PrintStream err;
+    // syntax error flag
+    volatile boolean hadError = false;
+    // runtime error flag
+    volatile boolean hadRuntimeError = false;
+
+    ErrorReporter(PrintStream err) {
+        this.err = err;
+    }
+
+    // error handling for individual lines
+    void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    // error handling with line number and where the error is
+    synchronized void report(int line, String where, String message) {
+        err.println("[line " + line + "] Error " + where + ": " + message);
+        hadError = true;
+        Events.error("syntax", line, message);
+    }
+
+    // error handling for tokens
+    void error(Token token, String message) {
+        if (token.type == TokenType.EOF)
+            report(token.line, " at end", message);
+        else
+            report(token.line, " at '" + token.lexeme + "'", message);
+    }
+
+    // error handling for runtime errors
+    synchronized void runtimeError(RuntimeError error) {
+        err.println(error.getMessage() + "\n[line " + error.token.line + "]");
+        hadRuntimeError = true;
+        Events.error("runtime", error.token.line, error.getMessage());
+    }
+
+    // exit status of a script: 65 for syntax errors, 70 for runtime errors (sysexits.h)
+    int exitCode() {
+        if (hadError)
+            return 65;
+        if (hadRuntimeError)
+            return 70;
+        return 0;
+    }
+}
@@ -0,0 +1,102 @@
+package com.saivishnu.lox;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Events class holds the JDK Flight Recorder events jlox emits, one per
+ * phase of a run (scan, parse, optimize, execute) and one per reported error.
+ * They all show up under "jlox" in JDK Mission Control, next to the GC and
+ * thread events of the same moment.
+ * Each phase creates its event, calls begin() when it starts and fills in the
+ * fields only if shouldCommit() says the event is being recorded. With no
+ * recording running that is all the cost there is.
+ */
+final class Events {
+
+    private Events() {
+    }
+
+    @Name("jlox.Scan")
+    @Label("Scan")
+    @Category("jlox")
+    @Description("Source code turned into tokens")
+    static class Scan extends Event {
+        @Label("Source Length")
+        @Description("Length of the source in chars")
+        int sourceLength;
+
+        @Label("Tokens")
+        int tokens;
+    }
+
+    @Name("jlox.Parse")
+    @Label("Parse")
+    @Category("jlox")
+    @Description("Tokens turned into statements")
+    static class Parse extends Event {
+        @Label("Tokens")
+        int tokens;
+
+        @Label("Statements")
+        int statements;
+    }
+
+    @Name("jlox.Optimize")
+    @Label("Optimize")
+    @Category("jlox")
+    @Description("Constant folding and removal of redundant nodes")
+    static class Optimize extends Event {
+        @Label("Statements")
+        int statements;
+
+        @Label("Nodes Removed")
+        int removed;
+    }
+
+    @Name("jlox.Execute")
+    @Label("Execute")
+    @Category("jlox")
+    @Description("A run on one of the backends, until every task it spawned is done")
+    static class Execute extends Event {
+        @Label("Backend")
+        String backend;
+
+        @Label("Statements")
+        @Description("Top level statements, interpreter only")
+        int statements;
+
+        @Label("Code Size")
+        @Description("Bytes of bytecode, vm only")
+        int codeSize;
+    }
+
+    @Name("jlox.Error")
+    @Label("Error")
+    @Category("jlox")
+    @Description("A syntax or runtime error in a script")
+    static class ScriptError extends Event {
+        @Label("Kind")
+        String kind;
+
+        @Label("Line")
+        int line;
+
+        @Label("Message")
+        String message;
+    }
+
+    // an error is a point in time, not a phase
+    static void error(String kind, int line, String message) {
+        ScriptError event = new ScriptError();
+        if (!event.isEnabled())
+            return;
+        event.kind = kind;
+        event.line = line;
+        event.message = message;
+        event.commit();
+    }
+}
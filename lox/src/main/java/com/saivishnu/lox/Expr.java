@@ -1,9 +1,13 @@
 package com.saivishnu.lox;
 
+import java.util.List;
+
 abstract class Expr {
 	interface Visitor<R> {
 		R visitBinaryExpr(Binary expr);
 
+		R visitCallExpr(Call expr);
+
 		R visitGroupingExpr(Grouping expr);
 
 		R visitLiteralExpr(Literal expr);
@@ -28,6 +32,25 @@ abstract class Expr {
 		final Expr left;
 		final Token operator;
 		final Expr right;
+		BinaryNode node;
+		Binary[] links;
+	}
+
+	static class Call extends Expr {
+		Call(Expr callee, Token paren, List<Expr> arguments) {
+			this.callee = callee;
+			this.paren = paren;
+			this.arguments = arguments;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitCallExpr(this);
+		}
+
+		final Expr callee;
+		final Token paren;
+		final List<Expr> arguments;
 	}
 
 	static class Grouping extends Expr {
@@ -82,6 +105,8 @@ abstract class Expr {
 		}
 
 		final Token name;
+		int depth;
+		int slot;
 	}
 
 	abstract <R> R accept(Visitor<R> visitor);
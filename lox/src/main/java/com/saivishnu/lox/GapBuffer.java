@@ -0,0 +1,88 @@
+package com.saivishnu.lox;
+
+import java.util.Arrays;
+
+/**
+ * The GapBuffer class is the text of an IncrementalParser: the chars live in
+ * one array with a gap in it, and the gap sits where the last edit was.
+ * An edit moves the gap to its offset (copying only the chars in between)
+ * and then writes into it, so a run of edits close to each other costs what
+ * the edits themselves are, not the length of the text.
+ */
+class GapBuffer implements CharSequence {
+    private char[] chars;
+    private int gapStart;
+    private int gapEnd;
+
+    GapBuffer(String text) {
+        chars = Arrays.copyOf(text.toCharArray(), Math.max(16, text.length() * 2));
+        gapStart = text.length();
+        gapEnd = chars.length;
+    }
+
+    // replace removed chars at offset with inserted
+    void replace(int offset, int removed, String inserted) {
+        moveGap(offset);
+        gapEnd += removed;
+        if (gapEnd - gapStart < inserted.length())
+            grow(inserted.length());
+        inserted.getChars(0, inserted.length(), chars, gapStart);
+        gapStart += inserted.length();
+    }
+
+    @Override
+    public int length() {
+        return chars.length - (gapEnd - gapStart);
+    }
+
+    @Override
+    public char charAt(int index) {
+        return chars[index < gapStart ? index : index + gapEnd - gapStart];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return substring(start, end);
+    }
+
+    String substring(int start, int end) {
+        if (end <= gapStart)
+            return new String(chars, start, end - start);
+        int gap = gapEnd - gapStart;
+        if (start >= gapStart)
+            return new String(chars, start + gap, end - start);
+        StringBuilder text = new StringBuilder(end - start);
+        text.append(chars, start, gapStart - start);
+        text.append(chars, gapEnd, end - gapStart);
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return substring(0, length());
+    }
+
+    private void moveGap(int offset) {
+        if (offset < gapStart) {
+            int moved = gapStart - offset;
+            System.arraycopy(chars, offset, chars, gapEnd - moved, moved);
+            gapStart -= moved;
+            gapEnd -= moved;
+        } else if (offset > gapStart) {
+            int moved = offset - gapStart;
+            System.arraycopy(chars, gapEnd, chars, gapStart, moved);
+            gapStart += moved;
+            gapEnd += moved;
+        }
+    }
+
+    // make room for at least needed chars in the gap
+    private void grow(int needed) {
+        int after = chars.length - gapEnd;
+        char[] grown = new char[Math.max(chars.length * 2, length() + needed + 16)];
+        System.arraycopy(chars, 0, grown, 0, gapStart);
+        System.arraycopy(chars, gapEnd, grown, grown.length - after, after);
+        chars = grown;
+        gapEnd = grown.length - after;
+    }
+}
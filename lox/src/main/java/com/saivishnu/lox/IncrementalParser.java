@@ -0,0 +1,408 @@
+package com.saivishnu.lox;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The IncrementalParser class keeps the syntax tree of a text that is being
+ * edited, for editors that want the statements after every keystroke.
+ * The text is cut into units, one per top level declaration: a unit starts at
+ * the first token of its declaration and runs up to the next one, so the
+ * whitespace and comments after a declaration belong to it.
+ * edit() re-scans and re-parses from the unit before the edit (its end can
+ * depend on the tokens after it) and stops as soon as a declaration starts
+ * exactly where an old unit after the edit starts. From there on the text and
+ * so the tokens are what they were, the old units and their Stmt trees are
+ * kept. If no such point turns up (say the edit opened a string), the window
+ * grows until one does or the text ends.
+ *
+ * An edit only touches the text and the units around it. The text is a
+ * GapBuffer, and the units are kept in a gap buffer of their own: the units
+ * before the gap hold their offset and line, the ones after it hold them
+ * counted back from the end of the text. Inserting or removing text at the
+ * gap moves every later unit without visiting any of them, and the gap only
+ * moves as far as from one edit to the next.
+ *
+ * statements() is like Parser.parse(): one entry per declaration, null for one
+ * that had a syntax error. Syntax errors are reported when they are found, so
+ * only errors in the re-parsed part are reported again after an edit.
+ * Adding or removing lines leaves the tokens of the later statements with old
+ * line numbers; those trees are copied with their lines moved when they are
+ * read from statements(), without scanning or parsing anything.
+ */
+class IncrementalParser {
+    private final GapBuffer text;
+    // newlines in the text, the last line is lines + 1
+    private int lines;
+    private final ErrorReporter reporter;
+    private final SymbolTable symbols;
+    // units [0, gapStart) and [gapEnd, units.length), see above
+    private Unit[] units = new Unit[16];
+    private int gapStart = 0;
+    private int gapEnd = units.length;
+    // units that had a syntax error
+    private int errorUnits = 0;
+    // an error in a text without a single declaration, there is no unit to blame
+    private boolean strayError = false;
+    // units re-parsed by the last edit
+    private int reparsed = 0;
+
+    private final List<Stmt> statements = new AbstractList<Stmt>() {
+        @Override
+        public Stmt get(int index) {
+            if (index < 0 || index >= size())
+                throw new IndexOutOfBoundsException("Index " + index + " out of range.");
+            return unit(index).statement(line(index));
+        }
+
+        @Override
+        public int size() {
+            return unitCount();
+        }
+    };
+
+    IncrementalParser(String text, ErrorReporter reporter) {
+        this(text, reporter, new SymbolTable());
+    }
+
+    IncrementalParser(String text, ErrorReporter reporter, SymbolTable symbols) {
+        this.text = new GapBuffer(text);
+        this.lines = lines(text, 0, text.length());
+        this.reporter = reporter;
+        this.symbols = symbols;
+        reparse(0, 0);
+    }
+
+    /*
+     * replace removed chars at offset with inserted and return the statements
+     * of the new text. the list is a live view, it changes with the next edit.
+     */
+    List<Stmt> edit(int offset, int removed, String inserted) {
+        if (offset < 0 || removed < 0 || offset + removed > text.length())
+            throw new IllegalArgumentException("Edit out of range.");
+
+        // the units the edit starts and ends in, in offsets from before the edit
+        int firstHit = unitAt(offset);
+        int lastHit = unitAt(offset + removed);
+
+        // the units after the edit go behind the gap, so they move along with the end of the text
+        moveGap(lastHit + 1);
+        lines += lines(inserted, 0, inserted.length()) - lines(text, offset, offset + removed);
+        text.replace(offset, removed, inserted);
+
+        reparse(Math.max(0, firstHit - 1), lastHit + 1);
+        return statements;
+    }
+
+    List<Stmt> statements() {
+        return statements;
+    }
+
+    String text() {
+        return text.toString();
+    }
+
+    boolean hadError() {
+        return errorUnits > 0 || strayError;
+    }
+
+    // number of declarations the last edit parsed again
+    int reparsed() {
+        return reparsed;
+    }
+
+    /*
+     * parse again from unit first on. the units from resume on are after the
+     * edit (their offsets are already moved), the first one a new declaration
+     * starts at is where the old units take over again.
+     */
+    private void reparse(int first, int resume) {
+        int windowStart = first < unitCount() ? start(first) : 0;
+        int line = first < unitCount() ? line(first) : 1;
+
+        // look at one old unit after the edit, then at twice as many, and so on
+        for (int lookahead = 1;; lookahead *= 2) {
+            int windowUnits = resume + lookahead;
+            boolean toEnd = windowUnits >= unitCount();
+            int windowEnd = toEnd ? text.length() : start(windowUnits);
+
+            // errors wait until the window turns out to be large enough
+            PendingErrors scanErrors = new PendingErrors();
+            TokenBuffer tokens = new Scanner(Source.of(text.substring(windowStart, windowEnd)), scanErrors, symbols,
+                    line).scan();
+            PendingErrors parseErrors = new PendingErrors();
+            Parser parser = new Parser(tokens, parseErrors);
+
+            List<Unit> parsed = new ArrayList<>();
+            // a token's line is where it ends (strings can span lines), so count them
+            int lineAt = line;
+            int lineFrom = windowStart;
+            int candidate = resume;
+            int sync = -1;
+            while (!parser.isAtEnd()) {
+                int at = windowStart + tokens.start(parser.position());
+                while (candidate < windowUnits && candidate < unitCount() && start(candidate) < at)
+                    candidate++;
+                if (candidate < windowUnits && candidate < unitCount() && start(candidate) == at) {
+                    sync = candidate;
+                    break;
+                }
+
+                int errors = parseErrors.errors.size();
+                Unit unit;
+                if (parsed.isEmpty()) {
+                    unit = new Unit(windowStart, line, parser.nextDeclaration());
+                } else {
+                    lineAt += lines(text, lineFrom, at);
+                    lineFrom = at;
+                    unit = new Unit(at, lineAt, parser.nextDeclaration());
+                }
+                unit.error = parseErrors.errors.size() > errors;
+                parsed.add(unit);
+            }
+            if (sync < 0 && !toEnd)
+                continue;
+
+            int syncLine = sync < 0 ? Integer.MAX_VALUE : line(sync);
+            splice(first, sync < 0 ? unitCount() : sync, parsed);
+            reparsed = parsed.size();
+
+            for (LoxError error : scanErrors.errors) {
+                // the units after sync were scanned before, their errors are old news
+                if (error.line() >= syncLine)
+                    continue;
+                reporter.report(error.line(), error.where(), error.message());
+                blame(first, parsed.size(), error.line());
+            }
+            parseErrors.replay(reporter, 0);
+            reporter.hadError = hadError();
+            return;
+        }
+    }
+
+    // replace units [from, to) with parsed, which hold their offsets and lines as they are
+    private void splice(int from, int to, List<Unit> parsed) {
+        moveGap(from);
+        for (int i = gapEnd; i < gapEnd + to - from; i++) {
+            if (units[i].error)
+                errorUnits--;
+            units[i] = null;
+        }
+        gapEnd += to - from;
+
+        if (gapEnd - gapStart < parsed.size())
+            grow(parsed.size());
+        for (Unit unit : parsed) {
+            if (unit.error)
+                errorUnits++;
+            units[gapStart++] = unit;
+        }
+
+        // whatever comes before the first declaration belongs to the first unit
+        if (from == 0 && unitCount() > 0) {
+            moveGap(Math.max(gapStart, 1));
+            Unit unit = units[0];
+            // its tokens keep their lines, only what they are counted from changes
+            unit.statementLine += 1 - unit.line;
+            unit.start = 0;
+            unit.line = 1;
+        }
+        strayError = false;
+    }
+
+    /*
+     * mark the unit a scan error on line is in: the last of the count new
+     * units at from that starts on or before it. with no new units the error
+     * was in the text between two old ones, it belongs to the one before.
+     */
+    private void blame(int from, int count, int line) {
+        int index = from;
+        while (index + 1 < from + count && line(index + 1) <= line)
+            index++;
+        if (count == 0 && from > 0)
+            index = from - 1;
+
+        if (index >= unitCount()) {
+            strayError = true;
+        } else if (!unit(index).error) {
+            unit(index).error = true;
+            errorUnits++;
+        }
+    }
+
+    // index of the last unit that starts at or before offset, -1 if there is none
+    private int unitAt(int offset) {
+        int low = 0;
+        int high = unitCount() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (start(middle) <= offset)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+        return high;
+    }
+
+    private int unitCount() {
+        return units.length - (gapEnd - gapStart);
+    }
+
+    private Unit unit(int index) {
+        return units[index < gapStart ? index : index + gapEnd - gapStart];
+    }
+
+    // offset of the unit's first char
+    private int start(int index) {
+        return index < gapStart ? units[index].start : text.length() - unit(index).start;
+    }
+
+    // line of the unit's first char
+    private int line(int index) {
+        return index < gapStart ? units[index].line : lines - unit(index).line;
+    }
+
+    /*
+     * move the gap so that units [0, index) are before it. a unit that crosses
+     * it turns its offset and line around: x from the start is length - x from
+     * the end, and the other way around.
+     */
+    private void moveGap(int index) {
+        int length = text.length();
+        while (gapStart > index) {
+            Unit unit = units[--gapStart];
+            units[gapStart] = null;
+            unit.start = length - unit.start;
+            unit.line = lines - unit.line;
+            units[--gapEnd] = unit;
+        }
+        while (gapStart < index) {
+            Unit unit = units[gapEnd];
+            units[gapEnd++] = null;
+            unit.start = length - unit.start;
+            unit.line = lines - unit.line;
+            units[gapStart++] = unit;
+        }
+    }
+
+    // make room for at least needed units in the gap
+    private void grow(int needed) {
+        int after = units.length - gapEnd;
+        Unit[] grown = new Unit[Math.max(units.length * 2, unitCount() + needed + 16)];
+        System.arraycopy(units, 0, grown, 0, gapStart);
+        System.arraycopy(units, gapEnd, grown, grown.length - after, after);
+        units = grown;
+        gapEnd = grown.length - after;
+    }
+
+    private static int lines(CharSequence text, int start, int end) {
+        int lines = 0;
+        for (int i = start; i < end; i++)
+            if (text.charAt(i) == '\n')
+                lines++;
+        return lines;
+    }
+
+    /*
+     * one top level declaration and the text up to the next one. start and
+     * line are counted from the start of the text or from its end, depending
+     * on which side of the gap the unit is.
+     */
+    private static class Unit {
+        int start;
+        int line;
+        boolean error = false;
+        private Stmt statement;
+        // the line the statement's tokens were counted from, see statement()
+        private int statementLine;
+
+        Unit(int start, int line, Stmt statement) {
+            this.start = start;
+            this.line = line;
+            this.statement = statement;
+            this.statementLine = line;
+        }
+
+        // the statement, with its lines brought up to date first if the unit moved to another line
+        Stmt statement(int line) {
+            if (line != statementLine && statement != null)
+                statement = statement.accept(new LineShifter(line - statementLine));
+            statementLine = line;
+            return statement;
+        }
+    }
+
+    // copies a tree with every token moved down (or up) by some lines
+    private static class LineShifter implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+        private final int lines;
+
+        LineShifter(int lines) {
+            this.lines = lines;
+        }
+
+        private Token shift(Token token) {
+            return new Token(token.type, token.lexeme, token.literal, token.line + lines, token.symbol);
+        }
+
+        @Override
+        public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+            return new Stmt.Expression(stmt.expression.accept(this));
+        }
+
+        @Override
+        public Stmt visitPrintStmt(Stmt.Print stmt) {
+            return new Stmt.Print(stmt.expression.accept(this));
+        }
+
+        @Override
+        public Stmt visitSpawnStmt(Stmt.Spawn stmt) {
+            return new Stmt.Spawn(shift(stmt.keyword), stmt.body.accept(this));
+        }
+
+        @Override
+        public Stmt visitVarStmt(Stmt.Var stmt) {
+            Expr initializer = stmt.initializer == null ? null : stmt.initializer.accept(this);
+            return new Stmt.Var(shift(stmt.name), initializer);
+        }
+
+        @Override
+        public Expr visitBinaryExpr(Expr.Binary expr) {
+            // a + b + c + ... in a loop, see Chains.of()
+            Expr.Binary[] chain = Chains.of(expr);
+            Expr left = chain[0].left.accept(this);
+            for (Expr.Binary link : chain)
+                left = new Expr.Binary(left, shift(link.operator), link.right.accept(this));
+            return left;
+        }
+
+        @Override
+        public Expr visitCallExpr(Expr.Call expr) {
+            List<Expr> arguments = new ArrayList<>(expr.arguments.size());
+            for (Expr argument : expr.arguments)
+                arguments.add(argument.accept(this));
+            return new Expr.Call(expr.callee.accept(this), shift(expr.paren), arguments);
+        }
+
+        @Override
+        public Expr visitGroupingExpr(Expr.Grouping expr) {
+            return new Expr.Grouping(expr.expression.accept(this));
+        }
+
+        @Override
+        public Expr visitLiteralExpr(Expr.Literal expr) {
+            // no token, nothing to move
+            return expr;
+        }
+
+        @Override
+        public Expr visitUnaryExpr(Expr.Unary expr) {
+            return new Expr.Unary(shift(expr.operator), expr.right.accept(this));
+        }
+
+        @Override
+        public Expr visitVariableExpr(Expr.Variable expr) {
+            return new Expr.Variable(shift(expr.name));
+        }
+    }
+}
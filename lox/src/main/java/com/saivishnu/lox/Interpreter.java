@@ -1,5 +1,6 @@
 package com.saivishnu.lox;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -10,6 +11,40 @@ import java.util.List;
  */
 class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
+    // global variables
+    private final Environment environment;
+    // where print goes
+    private final PrintSink out;
+    private final ErrorReporter reporter;
+    // tasks started by spawn, shared with the interpreters that run them
+    private final Tasks tasks;
+
+    // prints to stdout, errors go to stderr
+    Interpreter() {
+        this(PrintSink.of(System.out), new ErrorReporter(System.err));
+    }
+
+    Interpreter(PrintSink out, ErrorReporter reporter) {
+        this(new Environment(), out, reporter);
+    }
+
+    // run with globals that were (partly) filled in by the caller
+    Interpreter(Environment globals, PrintSink out, ErrorReporter reporter) {
+        this.environment = globals;
+        this.out = out;
+        this.reporter = reporter;
+        this.tasks = new Tasks();
+        Natives.define(globals);
+    }
+
+    // an interpreter for a task spawned by parent
+    Interpreter(Interpreter parent, Environment globals) {
+        this.environment = globals;
+        this.out = parent.out;
+        this.reporter = parent.reporter;
+        this.tasks = parent.tasks;
+    }
+
     @Override
     public Object visitLiteralExpr(Expr.Literal expr) {
         // return the value which is already stored
@@ -23,7 +58,13 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return evaluate(expr.expression);
     }
 
-    private Object evaluate(Expr expr) {
+    /*
+     * evaluate(), evaluateNumber() and execute() are the only ways into a node,
+     * ProfilingInterpreter overrides them to time every node. without --profile
+     * that class is never loaded, so the JIT sees no overrides and inlines
+     * these calls just like it did when they were private.
+     */
+    Object evaluate(Expr expr) {
         // call the visitor again to evaluate the inside expression
         return expr.accept(this);
     }
@@ -38,23 +79,95 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     // print statement visitor
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
-        Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
+        // numbers stay unboxed all the way to the sink
+        double number = evaluateNumber(stmt.expression);
+        Object value = takeNotNumber();
+        if (value == NUMBER)
+            out.println(number);
+        else
+            out.println(stringify(value));
         return null;
     }
 
+    /*
+     * spawn statement visitor. the task gets its own interpreter and a copy of
+     * the globals as they are right now, so tasks never share mutable state:
+     * they only talk through channels. the copy is made here, on the thread that
+     * owns the globals.
+     */
+    @Override
+    public Void visitSpawnStmt(Stmt.Spawn stmt) {
+        Interpreter task = fork(environment.copy());
+        tasks.spawn(() -> task.runTask(stmt.body));
+        return null;
+    }
+
+    // the interpreter a spawned task runs on
+    Interpreter fork(Environment globals) {
+        return new Interpreter(this, globals);
+    }
+
+    // body of a spawned task, its errors end only the task
+    private void runTask(Stmt body) {
+        try {
+            execute(body);
+        } catch (RuntimeError error) {
+            // what was printed before the error shows up before it
+            out.flush();
+            reporter.runtimeError(error);
+        }
+    }
+
+    // variable declaration visitor
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        Object value = null;
+        // a variable without an initializer is nil
+        if (stmt.initializer != null)
+            value = evaluate(stmt.initializer);
+
+        environment.define(stmt.slot, value);
+        return null;
+    }
+
+    @Override
+    public Object visitVariableExpr(Expr.Variable expr) {
+        return environment.get(expr.depth, expr.slot, expr.name);
+    }
+
+    @Override
+    public Object visitCallExpr(Expr.Call expr) {
+        // the callee first, then the arguments from left to right
+        Object callee = evaluate(expr.callee);
+
+        List<Object> arguments = new ArrayList<>(expr.arguments.size());
+        for (Expr argument : expr.arguments)
+            arguments.add(evaluate(argument));
+
+        return call(expr.paren, callee, arguments);
+    }
+
+    // check the callee and the number of arguments, then call it
+    static Object call(Token paren, Object callee, List<Object> arguments) {
+        if (!(callee instanceof LoxCallable))
+            throw new RuntimeError(paren, "Can only call functions and classes.");
+
+        LoxCallable function = (LoxCallable) callee;
+        if (arguments.size() != function.arity())
+            throw new RuntimeError(paren,
+                    "Expected " + function.arity() + " arguments but got " + arguments.size() + ".");
+        return function.call(paren, arguments);
+    }
+
     @Override
     public Object visitUnaryExpr(Expr.Unary expr) {
-        Object right = evaluate(expr.right);
         switch (expr.operator.type) {
             case BANG:
                 // if the right is truthy, return false, else return true
-                return !isTruthy(right);
+                return !isTruthy(evaluate(expr.right));
             case MINUS:
-                // check if right is a number or not
-                checkNumberOperand(expr.operator, right);
-                // negate the value by converting it to a double
-                return -(double) right;
+                // negate on the unboxed path, box only the result
+                return boxed(evaluateNegate(expr));
             default:
                 break;
         }
@@ -62,7 +175,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     // check if one operand is a number or not
-    private void checkNumberOperand(Token operator, Object operand) {
+    static void checkNumberOperand(Token operator, Object operand) {
         // if it is a number, then return nothing
         if (operand instanceof Double)
             return;
@@ -71,14 +184,14 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     // check if both left and right are a number or not
-    private void checkNumberOperands(Token operator, Object left, Object right) {
+    static void checkNumberOperands(Token operator, Object left, Object right) {
         // if both are numbers, then return nothing
         if (left instanceof Number && right instanceof Number)
             return;
         throw new RuntimeError(operator, "Operand must be a number.");
     }
 
-    private boolean isTruthy(Object object) {
+    static boolean isTruthy(Object object) {
         // everything that is a not a null or bool false is true.
         if (object == null)
             return false;
@@ -89,41 +202,166 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return true;
     }
 
+    @Override
     public Object visitBinaryExpr(Expr.Binary expr) {
-        Object left = evaluate(expr.left);
-        Object right = evaluate(expr.right);
+        // operands are evaluated unboxed where possible, only the result gets boxed
+        return boxed(evaluateBinaryNumber(expr));
+    }
 
+    /*
+     * ********** Unboxed evaluation of numbers **************
+     * evaluateNumber() returns the value of an expression as a primitive double,
+     * so nested arithmetic like (a + b) * c doesn't allocate a Double per node.
+     * if the value turns out not to be a number, the double returned is
+     * meaningless and the real (boxed) value is parked in notNumber instead.
+     * callers must pick it up with takeNotNumber() right after the call.
+     */
+
+    // marker for "the last evaluateNumber() produced a real number"
+    static final Object NUMBER = new Object();
+    private Object notNumber = NUMBER;
+
+    double evaluateNumber(Expr expr) {
+        if (expr instanceof Expr.Binary)
+            return evaluateBinaryNumber((Expr.Binary) expr);
+        if (expr instanceof Expr.Grouping)
+            return evaluateNumber(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Unary && ((Expr.Unary) expr).operator.type == TokenType.MINUS)
+            return evaluateNegate((Expr.Unary) expr);
+        // literals, variables and everything else go through the visitor
+        return notANumber(evaluate(expr));
+    }
+
+    private double evaluateBinaryNumber(Expr.Binary expr) {
+        // the Resolver sets links on long chains, like depth and slot on variables
+        if (expr.links != null)
+            return evaluateChain(expr.links);
+        return node(expr).execute(this, expr);
+    }
+
+    /*
+     * a + b + c + ...: going down the left side with a call per operator would
+     * overflow the Java stack on long chains, so those run in a loop over the
+     * operators (innermost first, see Chains.of()), left to right like
+     * one operator at a time. every operator still has its own node.
+     */
+    private double evaluateChain(Expr.Binary[] chain) {
+        double left = evaluateNumber(chain[0].left);
+        Object leftValue = takeNotNumber();
+        for (Expr.Binary link : chain) {
+            double right = evaluateNumber(link.right);
+            Object rightValue = takeNotNumber();
+            left = node(link).combine(this, link, left, leftValue, right, rightValue);
+            leftValue = takeNotNumber();
+        }
+        return leftValue == NUMBER ? left : notANumber(leftValue);
+    }
+
+    // each site runs through its own node, which specializes itself over time
+    private static BinaryNode node(Expr.Binary expr) {
+        BinaryNode node = expr.node;
+        if (node == null)
+            node = expr.node = new BinaryNode.Uninitialized();
+        return node;
+    }
+
+    // apply an operator to two operands that were evaluated with evaluateNumber()
+    double binaryNumber(Token operator, double left, Object leftValue, double right, Object rightValue) {
+        if (leftValue == NUMBER && rightValue == NUMBER) {
+            switch (operator.type) {
+                case MINUS:
+                    return left - right;
+                case PLUS:
+                    return left + right;
+                case SLASH:
+                    return left / right;
+                case STAR:
+                    return left * right;
+                // comparisons give a boolean, Boolean.valueOf() is cached so this doesn't allocate
+                case GREATER:
+                    return notANumber(left > right);
+                case GREATER_EQUAL:
+                    return notANumber(left >= right);
+                case LESS:
+                    return notANumber(left < right);
+                case LESS_EQUAL:
+                    return notANumber(left <= right);
+                default:
+                    break;
+            }
+        }
+
+        // not two numbers (or an equality check), box the operands and do it the generic way
+        return notANumber(binaryOperation(operator,
+                leftValue == NUMBER ? (Object) left : leftValue,
+                rightValue == NUMBER ? (Object) right : rightValue));
+    }
+
+    private double evaluateNegate(Expr.Unary expr) {
+        double right = evaluateNumber(expr.right);
+        Object rightValue = takeNotNumber();
+        // it is never a Double here, so this throws
+        if (rightValue != NUMBER)
+            checkNumberOperand(expr.operator, rightValue);
+        return -right;
+    }
+
+    // park a value that may not be a number for the caller of evaluateNumber()
+    double notANumber(Object value) {
+        if (value instanceof Double)
+            return (double) value;
+        notNumber = value;
+        return 0;
+    }
+
+    // pick up the parked value (or NUMBER) and reset it
+    Object takeNotNumber() {
+        Object value = notNumber;
+        notNumber = NUMBER;
+        return value;
+    }
+
+    // turn the result of evaluateNumber() back into a regular value
+    private Object boxed(double value) {
+        Object other = takeNotNumber();
+        return other == NUMBER ? (Object) value : other;
+    }
+
+    // generic (boxed) binary operation on values that are already evaluated
+    static Object binaryOperation(Token operator, Object left, Object right) {
         /*
          * comparison >, >=, <, <=
          * arithmetic -, + (num, str), /, *
          * not-equals or equals comparison !=, ==
          * in the same order to preserve precedence
          */
-        switch (expr.operator.type) {
+        switch (operator.type) {
             case GREATER:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left > (double) right;
             case GREATER_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left >= (double) right;
             case LESS:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left < (double) right;
             case LESS_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left <= (double) right;
             case MINUS:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left - (double) right;
             case PLUS:
                 if (left instanceof Double && right instanceof Double)
                     return (double) left + (double) right;
-                if (left instanceof String && right instanceof String)
-                    return (String) left + (String) right;
-                throw new RuntimeError(expr.operator, "Operands must be 2 numbers or 2 strings.");
+                if (Rope.isString(left) && Rope.isString(right))
+                    return Rope.concat(left, right);
+                throw new RuntimeError(operator, "Operands must be 2 numbers or 2 strings.");
             case SLASH:
+                checkNumberOperands(operator, left, right);
                 return (double) left / (double) right;
             case STAR:
+                checkNumberOperands(operator, left, right);
                 return (double) left * (double) right;
             case BANG_EQUAL:
                 return !isEqual(left, right);
@@ -135,13 +373,19 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
-    private boolean isEqual(Object a, Object b) {
+    static boolean isEqual(Object a, Object b) {
         // if both are null, then return true
         if (a == null && b == null)
             return true;
         if (a == null)
             return false;
 
+        // a rope and a string (or two ropes) are equal if their text is,
+        // which can't be when the lengths differ: no need to flatten then
+        if (a instanceof Rope || b instanceof Rope)
+            return Rope.isString(a) && Rope.isString(b) && Rope.length(a) == Rope.length(b)
+                    && a.toString().equals(b.toString());
+
         // if both are not null then compare
         return a.equals(b);
     }
@@ -151,8 +395,14 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
      * is responsible for evaluating the expression
      * if it runs into RuntimeError then it will be caught
      * or else convert the the output to string anf print it to the screen
+     * statements can be a list or a stream of statements that are parsed as
+     * they are asked for (see Session's --stream), either way each one runs
+     * before the next is looked at.
      */
-    void interpret(List<Stmt> statements) {
+    void interpret(Iterable<Stmt> statements) {
+        Events.Execute event = new Events.Execute();
+        event.begin();
+        int executed = 0;
         try {
             /*
              * // evaluate the expression and print it
@@ -162,30 +412,35 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
              */
             for (Stmt statement : statements) {
                 execute(statement);
+                executed++;
             }
         } catch (RuntimeError error) {
-            Lox.runtimeError(error);
+            // what was printed before the error shows up before it
+            out.flush();
+            reporter.runtimeError(error);
+        }
+        // the run isn't over until every task it spawned is
+        tasks.await();
+        if (event.shouldCommit()) {
+            event.backend = "interpreter";
+            event.statements = executed;
+            event.commit();
         }
     }
 
     // helper method to execute the statement
-    private void execute(Stmt statement) {
+    void execute(Stmt statement) {
         statement.accept(this);
     }
 
     // convert output to string
-    private String stringify(Object object) {
+    static String stringify(Object object) {
         // if it is null then return 'nil' because Lox prefers nil over null
         if (object == null)
             return "nil";
         // check for number
-        if (object instanceof Double) {
-            String text = object.toString();
-            // if it is a int with no decimal value, yeet the redundant .0
-            if (text.endsWith(".0"))
-                text = text.substring(0, text.length() - 2);
-            return text;
-        }
+        if (object instanceof Double)
+            return NumberText.toString((double) object);
         // convert the rest to string and return it
         return object.toString();
     }
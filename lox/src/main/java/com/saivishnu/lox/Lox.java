@@ -3,110 +3,75 @@ package com.saivishnu.lox;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 
 public class Lox {
-    // interpreter object
-    private static final Interpreter interpreter = new Interpreter();
-    // syntax error flag
-    static boolean hadError = false;
-    // runtime error flag
-    static boolean hadRuntimeError = false;
+    // part of the cache key, so entries from other versions are never used
+    static final String VERSION = "0.1.0";
+
+    // command line flags
+    private static final Options options = new Options();
 
     public static void main(String[] args) throws IOException {
-        // check if there there than more than one input file
-        if (args.length > 1) {
-            System.out.println("Usage: jlox [script]");
+        // options come before the scripts
+        int argc = options.parse(args);
+        if (argc < 0) {
+            System.out.println(Options.usage());
             System.exit(64);
-        } else if (args.length == 1) // if only one file is sent, parse it
-            runFile(args[0]);
+        }
+
+        List<Path> scripts = new ArrayList<>();
+        for (int i = argc; i < args.length; i++)
+            scripts.add(Paths.get(args[i]));
+
+        // one file runs right here, more files or a directory go to the batch runner
+        if (scripts.size() == 1 && !Files.isDirectory(scripts.get(0)))
+            runFile(scripts.get(0));
+        else if (!scripts.isEmpty())
+            System.exit(new BatchRunner(options).run(BatchRunner.expand(scripts)));
         else
             runPrompt(); // if not, open a interactive prompt
     }
 
     // read the file and run it
-    private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));
+    private static void runFile(Path path) throws IOException {
+        Session session = new Session(options, System.out, System.err);
+        try {
+            session.runFile(path);
+        } finally {
+            session.close();
+        }
         // syntax error in file
-        if (hadError)
+        if (session.reporter.hadError)
             System.exit(65);
         // runtime error in file
-        if (hadRuntimeError)
+        if (session.reporter.hadRuntimeError)
             System.exit(70);
     }
 
     // open a interactive prompt
     private static void runPrompt() throws IOException {
+        Session session = new Session(options, System.out, System.err);
         InputStreamReader input = new InputStreamReader(System.in);
         BufferedReader reader = new BufferedReader(input);
         while (true) {
             System.out.print("> ");
             String line = reader.readLine();
             // a way to come out of the interactive prompt
-            if (line == null || line.equals("exit()"))
+            if (line == null || line.equals("exit()")) {
+                session.close();
                 break;
-            run(line);
-            hadError = false;
+            }
+            session.run(Source.of(line));
+            session.reporter.hadError = false;
             /*
              * nothing is done about the runtime error
              * as we do not want to stop interactive prompt for a runtime error.
              */
         }
     }
-
-    // run the source code
-    private static void run(String source) {
-        Scanner sc = new Scanner(source);
-        List<Token> tokens = sc.scanTokens();
-
-        // two sample code to either print all the token or the syntax tree
-        // METHOD 1:
-        // print the tokens
-        // for (Token token : tokens)
-        // System.out.println(token);
-
-        // METHOD 2:
-        // print the expression using AstPrinter
-        // System.out.println(new AstPrinter().print(expression));
-
-        // parse the tokens
-        Parser parser = new Parser(tokens);
-        List<Stmt> statement = parser.parse();
-
-        // if there was a syntax error, stop execution
-        if (hadError)
-            return;
-
-        // call the interpreter to interpret the expression
-        interpreter.interpret(statement);
-    }
-
-    // error handling for individual lines
-    static void error(int line, String message) {
-        report(line, "", message);
-    }
-
-    // error handling with line number and where the error is
-    static void report(int line, String where, String message) {
-        System.err.println("[line " + line + "] Error " + where + ": " + message);
-        hadError = true;
-    }
-
-    // error handling for tokens
-    static void error(Token token, String message) {
-        if (token.type == TokenType.EOF)
-            report(token.line, " at end", message);
-        else
-            report(token.line, " at '" + token.lexeme + "'", message);
-    }
-
-    // error handling for runtime errors
-    static void runtimeError(RuntimeError error) {
-        System.err.println(error.getMessage() + "\n[line " + error.token.line + "]");
-        hadRuntimeError = true;
-    }
-}
\ No newline at end of file
+}
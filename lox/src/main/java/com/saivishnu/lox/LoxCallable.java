@@ -0,0 +1,14 @@
+package com.saivishnu.lox;
+
+import java.util.List;
+
+/**
+ * The LoxCallable interface is anything that can be called with ( ).
+ * Only the native functions (see Natives) exist for now. The paren of the call
+ * is passed in so a function can report a runtime error at the call site.
+ */
+interface LoxCallable {
+    int arity();
+
+    Object call(Token paren, List<Object> arguments);
+}
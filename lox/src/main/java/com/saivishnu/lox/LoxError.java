@@ -0,0 +1,48 @@
+package com.saivishnu.lox;
+
+/**
+ * The LoxError class describes a syntax or runtime error without printing it.
+ * toString() gives the same text the command line prints.
+ */
+public final class LoxError {
+
+    public enum Kind {
+        SYNTAX, RUNTIME
+    }
+
+    private final Kind kind;
+    private final int line;
+    private final String where;
+    private final String message;
+
+    LoxError(Kind kind, int line, String where, String message) {
+        this.kind = kind;
+        this.line = line;
+        this.where = where;
+        this.message = message;
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    public int line() {
+        return line;
+    }
+
+    /** Where on the line a syntax error is, e.g. " at ';'". Empty for runtime errors. */
+    public String where() {
+        return where;
+    }
+
+    public String message() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        if (kind == Kind.SYNTAX)
+            return "[line " + line + "] Error " + where + ": " + message;
+        return message + "\n[line " + line + "]";
+    }
+}
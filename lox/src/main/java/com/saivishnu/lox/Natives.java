@@ -0,0 +1,104 @@
+package com.saivishnu.lox;
+
+import java.util.List;
+
+/**
+ * The Natives class holds the functions that are built into the language.
+ * They are globals like any other: the Resolver gives them the first global
+ * slots (in the order of NAMES) and every new set of globals defines them.
+ *
+ * channel(capacity)    a new Channel, capacity 0 means unbuffered
+ * send(channel, value) waits until the channel takes the value, returns nil
+ * receive(channel)     waits for a value and returns it
+ */
+final class Natives {
+
+    static final String[] NAMES = { "channel", "send", "receive" };
+
+    private static final LoxCallable[] FUNCTIONS = { new NewChannel(), new Send(), new Receive() };
+
+    private Natives() {
+    }
+
+    // put every native function in its slot
+    static void define(Environment globals) {
+        for (int slot = 0; slot < FUNCTIONS.length; slot++)
+            globals.define(slot, FUNCTIONS[slot]);
+    }
+
+    private static class NewChannel implements LoxCallable {
+        @Override
+        public int arity() {
+            return 1;
+        }
+
+        @Override
+        public Object call(Token paren, List<Object> arguments) {
+            Object capacity = arguments.get(0);
+            if (!(capacity instanceof Double) || (double) capacity < 0
+                    || (double) capacity > Integer.MAX_VALUE || (double) capacity != Math.floor((double) capacity))
+                throw new RuntimeError(paren, "Channel capacity must be a non-negative integer.");
+            return new Channel((int) (double) capacity);
+        }
+
+        @Override
+        public String toString() {
+            return "<native fn>";
+        }
+    }
+
+    private static class Send implements LoxCallable {
+        @Override
+        public int arity() {
+            return 2;
+        }
+
+        @Override
+        public Object call(Token paren, List<Object> arguments) {
+            try {
+                channel(paren, arguments.get(0)).send(arguments.get(1));
+                return null;
+            } catch (InterruptedException error) {
+                throw interrupted(paren);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "<native fn>";
+        }
+    }
+
+    private static class Receive implements LoxCallable {
+        @Override
+        public int arity() {
+            return 1;
+        }
+
+        @Override
+        public Object call(Token paren, List<Object> arguments) {
+            try {
+                return channel(paren, arguments.get(0)).receive();
+            } catch (InterruptedException error) {
+                throw interrupted(paren);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "<native fn>";
+        }
+    }
+
+    private static Channel channel(Token paren, Object value) {
+        if (!(value instanceof Channel))
+            throw new RuntimeError(paren, "Operand must be a channel.");
+        return (Channel) value;
+    }
+
+    // keep the interrupt flag for whoever runs the task, and stop the task
+    private static RuntimeError interrupted(Token paren) {
+        Thread.currentThread().interrupt();
+        return new RuntimeError(paren, "Interrupted while waiting on a channel.");
+    }
+}
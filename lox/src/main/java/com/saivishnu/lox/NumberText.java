@@ -0,0 +1,76 @@
+package com.saivishnu.lox;
+
+/**
+ * The NumberText class turns numbers into the text print shows for them:
+ * Double.toString() without a trailing ".0".
+ * Whole numbers that Double.toString() would write without an exponent (less
+ * than 10^7 away from zero) are the common case, their digits are written
+ * straight into a byte array. Everything else goes through
+ * StringBuilder.append(double), which runs the same algorithm as
+ * Double.toString() without making a String, so the output is the same on
+ * every JDK.
+ */
+final class NumberText {
+
+    // longest text of a double, e.g. -2.2250738585072014E-308
+    static final int MAX_LENGTH = 24;
+
+    // Double.toString() switches to an exponent from here on
+    private static final double PLAIN_LIMIT = 1e7;
+
+    private NumberText() {
+    }
+
+    // a whole number that is written as plain digits
+    static boolean isPlainIntegral(double number) {
+        return Math.abs(number) < PLAIN_LIMIT && number == Math.rint(number);
+    }
+
+    /*
+     * write the digits of a plain integral number (see isPlainIntegral()) at
+     * position and return the position after them. -0 keeps its sign, like
+     * Double.toString() does.
+     */
+    static int writeIntegral(double number, byte[] bytes, int position) {
+        if (Double.doubleToRawLongBits(number) < 0)
+            bytes[position++] = '-';
+        int value = (int) Math.abs(number);
+
+        int length = 1;
+        for (int rest = value / 10; rest != 0; rest /= 10)
+            length++;
+        int end = position + length;
+        for (int i = end - 1; i >= position; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    // append the text of any number
+    static void append(StringBuilder sb, double number) {
+        if (isPlainIntegral(number)) {
+            if (Double.doubleToRawLongBits(number) < 0)
+                sb.append('-');
+            sb.append((int) Math.abs(number));
+            return;
+        }
+        int start = sb.length();
+        sb.append(number);
+        // if it is a int with no decimal value, yeet the redundant .0
+        int length = sb.length();
+        if (length - start >= 2 && sb.charAt(length - 2) == '.' && sb.charAt(length - 1) == '0')
+            sb.setLength(length - 2);
+    }
+
+    static String toString(double number) {
+        if (isPlainIntegral(number)) {
+            if (Double.doubleToRawLongBits(number) < 0)
+                return number == 0 ? "-0" : Integer.toString((int) number);
+            return Integer.toString((int) number);
+        }
+        StringBuilder sb = new StringBuilder(MAX_LENGTH);
+        append(sb, number);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,46 @@
+package com.saivishnu.lox;
+
+/**
+ * The OpCode class lists the instructions understood by the VM.
+ * They are plain bytes instead of an enum so the dispatch loop can switch on
+ * them directly without an ordinal lookup.
+ */
+final class OpCode {
+    // push constants[u16] / constants[u24]
+    static final byte CONSTANT = 0;
+    static final byte CONSTANT_LONG = 1;
+    // push the literal values that don't need the constant pool
+    static final byte NIL = 2;
+    static final byte TRUE = 3;
+    static final byte FALSE = 4;
+    // discard the top of the stack
+    static final byte POP = 5;
+    // globals, the operand is the slot (u24) given by the Resolver
+    static final byte DEFINE_GLOBAL = 6;
+    static final byte GET_GLOBAL = 7;
+    // comparison and equality
+    static final byte EQUAL = 8;
+    static final byte NOT_EQUAL = 9;
+    static final byte GREATER = 10;
+    static final byte GREATER_EQUAL = 11;
+    static final byte LESS = 12;
+    static final byte LESS_EQUAL = 13;
+    // arithmetic
+    static final byte ADD = 14;
+    static final byte SUBTRACT = 15;
+    static final byte MULTIPLY = 16;
+    static final byte DIVIDE = 17;
+    // unary
+    static final byte NOT = 18;
+    static final byte NEGATE = 19;
+    // statements
+    static final byte PRINT = 20;
+    static final byte RETURN = 21;
+    // call the value below the arguments, the operand is the argument count (u8)
+    static final byte CALL = 22;
+    // run a Chunk from the constant pool (index u24) as a new task
+    static final byte SPAWN = 23;
+
+    private OpCode() {
+    }
+}
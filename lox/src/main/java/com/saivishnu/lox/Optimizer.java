@@ -0,0 +1,267 @@
+package com.saivishnu.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Optimizer class rewrites the syntax tree between parsing and
+ * interpreting.
+ * It folds operators whose operands are all literals, drops grouping nodes
+ * (they only matter for the shape of the tree) and removes identity
+ * operations like x * 1.
+ * It never changes what a program prints: anything that could fail at runtime
+ * is left alone so the error still happens, on the same line.
+ */
+class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+
+    // number of nodes taken out of the tree so far
+    private int removed = 0;
+
+    List<Stmt> optimize(List<Stmt> statements) {
+        Events.Optimize event = new Events.Optimize();
+        event.begin();
+        int removedBefore = removed;
+        List<Stmt> optimized = new ArrayList<>(statements.size());
+        for (Stmt statement : statements) {
+            optimized.add(statement.accept(this));
+        }
+        if (event.shouldCommit()) {
+            event.statements = statements.size();
+            event.removed = removed - removedBefore;
+            event.commit();
+        }
+        return optimized;
+    }
+
+    int removed() {
+        return removed;
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+        Expr expression = optimize(stmt.expression);
+        return expression == stmt.expression ? stmt : new Stmt.Expression(expression);
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Stmt.Print stmt) {
+        Expr expression = optimize(stmt.expression);
+        return expression == stmt.expression ? stmt : new Stmt.Print(expression);
+    }
+
+    @Override
+    public Stmt visitSpawnStmt(Stmt.Spawn stmt) {
+        Stmt body = stmt.body.accept(this);
+        return body == stmt.body ? stmt : new Stmt.Spawn(stmt.keyword, body);
+    }
+
+    @Override
+    public Stmt visitVarStmt(Stmt.Var stmt) {
+        if (stmt.initializer == null)
+            return stmt;
+        Expr initializer = optimize(stmt.initializer);
+        return initializer == stmt.initializer ? stmt : new Stmt.Var(stmt.name, initializer);
+    }
+
+    @Override
+    public Expr visitCallExpr(Expr.Call expr) {
+        // a call is never folded, only what goes into it
+        Expr callee = optimize(expr.callee);
+        boolean changed = callee != expr.callee;
+        List<Expr> arguments = new ArrayList<>(expr.arguments.size());
+        for (Expr argument : expr.arguments) {
+            Expr optimized = optimize(argument);
+            changed |= optimized != argument;
+            arguments.add(optimized);
+        }
+        return changed ? new Expr.Call(callee, expr.paren, arguments) : expr;
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        // (x) evaluates exactly like x
+        removed++;
+        return optimize(expr.expression);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr right = optimize(expr.right);
+
+        if (right instanceof Expr.Literal) {
+            Object value = ((Expr.Literal) right).value;
+            if (expr.operator.type == TokenType.BANG) {
+                removed++;
+                return new Expr.Literal(!Interpreter.isTruthy(value));
+            }
+            if (expr.operator.type == TokenType.MINUS && value instanceof Double) {
+                removed++;
+                return new Expr.Literal(-(double) value);
+            }
+        }
+
+        // - - x is x, as long as x is a number (otherwise the inner minus reports the error)
+        if (expr.operator.type == TokenType.MINUS && right instanceof Expr.Unary) {
+            Expr.Unary inner = (Expr.Unary) right;
+            if (inner.operator.type == TokenType.MINUS && isNumber(inner.right)) {
+                removed += 2;
+                return inner.right;
+            }
+        }
+
+        return right == expr.right ? expr : new Expr.Unary(expr.operator, right);
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        // a + b + c + ... in a loop, each operator gets the optimized chain before it
+        Expr.Binary[] chain = Chains.of(expr);
+        Expr left = optimize(chain[0].left);
+        for (Expr.Binary link : chain)
+            left = optimize(link, left, optimize(link.right));
+        return left;
+    }
+
+    // one binary operator, its operands are optimized already
+    private Expr optimize(Expr.Binary expr, Expr left, Expr right) {
+        if (left instanceof Expr.Literal && right instanceof Expr.Literal) {
+            Expr folded = fold(expr.operator, ((Expr.Literal) left).value, ((Expr.Literal) right).value);
+            if (folded != null) {
+                removed += 2;
+                return folded;
+            }
+        }
+
+        Expr simplified = simplify(expr.operator, left, right);
+        if (simplified != null) {
+            removed += 2;
+            return simplified;
+        }
+
+        if (left == expr.left && right == expr.right)
+            return expr;
+        return new Expr.Binary(left, expr.operator, right);
+    }
+
+    private Expr optimize(Expr expr) {
+        return expr.accept(this);
+    }
+
+    // evaluate an operator on two literal values, null if it can't be done safely
+    private Expr fold(Token operator, Object left, Object right) {
+        switch (operator.type) {
+            case BANG_EQUAL:
+                return new Expr.Literal(!Interpreter.isEqual(left, right));
+            case EQUAL_EQUAL:
+                return new Expr.Literal(Interpreter.isEqual(left, right));
+            case PLUS:
+                if (left instanceof String && right instanceof String)
+                    return new Expr.Literal((String) left + (String) right);
+                break;
+            default:
+                break;
+        }
+
+        // everything else only works on numbers, leave type errors to the runtime
+        if (!(left instanceof Double && right instanceof Double))
+            return null;
+        double a = (double) left;
+        double b = (double) right;
+
+        switch (operator.type) {
+            case GREATER:
+                return new Expr.Literal(a > b);
+            case GREATER_EQUAL:
+                return new Expr.Literal(a >= b);
+            case LESS:
+                return new Expr.Literal(a < b);
+            case LESS_EQUAL:
+                return new Expr.Literal(a <= b);
+            case MINUS:
+                return new Expr.Literal(a - b);
+            case PLUS:
+                return new Expr.Literal(a + b);
+            case SLASH:
+                return new Expr.Literal(a / b);
+            case STAR:
+                return new Expr.Literal(a * b);
+            default:
+                return null;
+        }
+    }
+
+    /*
+     * identities, only when the other side is known to be a number so that
+     * the result is the same value (including -0) and no error goes missing.
+     * x * 1, 1 * x, x / 1, x - 0 -> x
+     * x + 0 is not on the list because -0 + 0 is 0, not -0.
+     */
+    private Expr simplify(Token operator, Expr left, Expr right) {
+        switch (operator.type) {
+            case STAR:
+                if (isLiteral(right, 1) && isNumber(left))
+                    return left;
+                if (isLiteral(left, 1) && isNumber(right))
+                    return right;
+                break;
+            case SLASH:
+                if (isLiteral(right, 1) && isNumber(left))
+                    return left;
+                break;
+            case MINUS:
+                if (isLiteral(right, 0) && isNumber(left))
+                    return left;
+                break;
+            default:
+                break;
+        }
+        return null;
+    }
+
+    private boolean isLiteral(Expr expr, double value) {
+        if (!(expr instanceof Expr.Literal))
+            return false;
+        Object literal = ((Expr.Literal) expr).value;
+        // compare bits so -0 doesn't count as 0
+        return literal instanceof Double
+                && Double.doubleToLongBits((double) literal) == Double.doubleToLongBits(value);
+    }
+
+    // true if the expression either evaluates to a number or fails with its own error
+    private boolean isNumber(Expr expr) {
+        // down the left side of a + b + c + ... in a loop
+        while (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            switch (binary.operator.type) {
+                case MINUS:
+                case SLASH:
+                case STAR:
+                    return true;
+                case PLUS:
+                    if (!isNumber(binary.right))
+                        return false;
+                    expr = binary.left;
+                    break;
+                default:
+                    return false;
+            }
+        }
+        if (expr instanceof Expr.Literal)
+            return ((Expr.Literal) expr).value instanceof Double;
+        if (expr instanceof Expr.Grouping)
+            return isNumber(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Unary)
+            return ((Expr.Unary) expr).operator.type == TokenType.MINUS;
+        return false;
+    }
+}
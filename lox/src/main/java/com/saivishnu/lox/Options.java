@@ -0,0 +1,122 @@
+package com.saivishnu.lox;
+
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The Options class holds the command line flags that change how scripts are
+ * run. It is filled in once by Lox.main and shared by every Session.
+ */
+class Options {
+    // compile to bytecode and run it on the VM instead of the interpreter
+    boolean useVm = false;
+    // run the optimizer between the parser and the interpreter
+    boolean optimize = false;
+    // scan files straight from a memory mapping instead of reading them into a String
+    boolean mmap = false;
+    // on-disk cache of parsed scripts
+    boolean useCache = false;
+    Path cacheDir = Paths.get(System.getProperty("user.home"), ".jlox", "cache");
+    long cacheMegabytes = 64;
+    // number of scripts run at the same time when there is more than one
+    int jobs = Runtime.getRuntime().availableProcessors();
+    // when print output is written out, see BufferedSink
+    BufferedSink.Flush flush = BufferedSink.Flush.SIZE;
+    int flushSize = BufferedSink.DEFAULT_CAPACITY;
+    long flushInterval = 100;
+    // write print output on a background thread
+    boolean asyncPrint = false;
+    // run each statement of a file as soon as it is parsed, see Session.stream()
+    boolean stream = false;
+    // scan large files on several threads, see ParallelScanner
+    boolean parallelScan = false;
+    // parse large files on several threads, see ParallelParser
+    boolean parallelParse = false;
+    // run on closures compiled from the tree instead of walking it, see ClosureCompiler
+    boolean closure = false;
+    // time every node and report the hot lines when done, see Profile
+    boolean profile = false;
+    // where to write collapsed stacks for a flame graph, null for nowhere
+    Path profileStacks = null;
+
+    private ScriptCache cache = null;
+
+    /*
+     * read the flags at the start of args and return the index of the first
+     * argument that is not one, or -1 if a flag is unknown.
+     */
+    int parse(String[] args) {
+        int argc = 0;
+        while (argc < args.length && args[argc].startsWith("--")) {
+            String arg = args[argc];
+            if (arg.equals("--vm"))
+                useVm = true;
+            else if (arg.equals("--closure"))
+                closure = true;
+            else if (arg.equals("--optimize"))
+                optimize = true;
+            else if (arg.equals("--mmap"))
+                mmap = true;
+            else if (arg.equals("--cache"))
+                useCache = true;
+            else if (arg.startsWith("--cache-dir=")) {
+                useCache = true;
+                cacheDir = Paths.get(arg.substring("--cache-dir=".length()));
+            } else if (arg.startsWith("--cache-size=")) {
+                useCache = true;
+                cacheMegabytes = Long.parseLong(arg.substring("--cache-size=".length()));
+            } else if (arg.startsWith("--jobs="))
+                jobs = Math.max(1, Integer.parseInt(arg.substring("--jobs=".length())));
+            else if (arg.equals("--flush=exit"))
+                flush = BufferedSink.Flush.EXIT;
+            else if (arg.equals("--flush=size"))
+                flush = BufferedSink.Flush.SIZE;
+            else if (arg.equals("--flush=interval"))
+                flush = BufferedSink.Flush.INTERVAL;
+            else if (arg.startsWith("--flush-size=")) {
+                flush = BufferedSink.Flush.SIZE;
+                flushSize = Math.max(1, Integer.parseInt(arg.substring("--flush-size=".length())));
+            } else if (arg.startsWith("--flush-interval=")) {
+                flush = BufferedSink.Flush.INTERVAL;
+                flushInterval = Math.max(1, Long.parseLong(arg.substring("--flush-interval=".length())));
+            } else if (arg.equals("--async-print"))
+                asyncPrint = true;
+            else if (arg.equals("--stream"))
+                stream = true;
+            else if (arg.equals("--parallel-scan"))
+                parallelScan = true;
+            else if (arg.equals("--parallel-parse"))
+                parallelParse = true;
+            else if (arg.equals("--profile"))
+                profile = true;
+            else if (arg.startsWith("--profile-stacks=")) {
+                profile = true;
+                profileStacks = Paths.get(arg.substring("--profile-stacks=".length()));
+            } else
+                return -1;
+            argc++;
+        }
+        return argc;
+    }
+
+    static String usage() {
+        return "Usage: jlox [--vm] [--closure] [--optimize] [--mmap] [--cache] [--cache-dir=<dir>]"
+                + " [--cache-size=<megabytes>] [--jobs=<n>] [--flush=exit|size|interval]"
+                + " [--flush-size=<bytes>] [--flush-interval=<ms>] [--async-print]"
+                + " [--stream] [--parallel-scan] [--parallel-parse] [--profile] [--profile-stacks=<file>] [script | directory ...]";
+    }
+
+    // the sink print statements write to, on top of a stream
+    PrintSink sink(OutputStream out) {
+        return new BufferedSink(out, Charset.defaultCharset(), flush, flushSize, flushInterval, asyncPrint);
+    }
+
+    // the cache to use for files, null when caching is off
+    synchronized ScriptCache cache() {
+        if (useCache && cache == null)
+            cache = new ScriptCache(cacheDir, cacheMegabytes * 1024 * 1024);
+        return cache;
+    }
+}
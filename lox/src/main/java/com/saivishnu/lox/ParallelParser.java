@@ -0,0 +1,133 @@
+package com.saivishnu.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import static com.saivishnu.lox.TokenType.*;
+
+/**
+ * The ParallelParser class parses the top level statements of a large token
+ * buffer on several threads, for --parallel-parse. The statements and errors
+ * are the ones Parser.parse() gives, in the same order.
+ * Every statement ends with a ";" and there are no blocks, so a statement
+ * can't have a ";" inside of it and the token after a ";" starts a new one.
+ * The tokens are cut into ranges after a ";" and each range is parsed on the
+ * fork/join pool by a Parser of its own that stops at the end of the range.
+ * Its errors are kept with the range instead of being reported.
+ * A range without errors parsed exactly like it would have sequentially. One
+ * with an error may not have: recovering from it can run past the end of the
+ * range, and the message names the token after the range as if it was the
+ * end. So from the start of such a range the tokens are parsed sequentially
+ * (reporting as usual) until a declaration starts exactly where a later range
+ * starts, and that range's statements are taken from there.
+ * Below THRESHOLD tokens a plain Parser is used.
+ */
+class ParallelParser {
+    static final int THRESHOLD = 1 << 16;
+    // more ranges than threads, so one slow range doesn't keep the others waiting
+    private static final int RANGES_PER_THREAD = 4;
+
+    private final TokenBuffer tokens;
+    private final ErrorReporter reporter;
+    private final ForkJoinPool pool;
+    // fewest tokens that are cut into ranges, and about how many they are cut into
+    private final int threshold;
+    private final int rangeCount;
+
+    ParallelParser(TokenBuffer tokens, ErrorReporter reporter) {
+        this(tokens, reporter, ForkJoinPool.commonPool());
+    }
+
+    ParallelParser(TokenBuffer tokens, ErrorReporter reporter, ForkJoinPool pool) {
+        this(tokens, reporter, pool, THRESHOLD, pool.getParallelism() * RANGES_PER_THREAD);
+    }
+
+    // tests cut short token buffers into many ranges, so errors end up next to their edges
+    ParallelParser(TokenBuffer tokens, ErrorReporter reporter, ForkJoinPool pool, int threshold, int rangeCount) {
+        this.tokens = tokens;
+        this.reporter = reporter;
+        this.pool = pool;
+        this.threshold = threshold;
+        this.rangeCount = rangeCount;
+    }
+
+    List<Stmt> parse() {
+        if (tokens.size() < threshold || pool.getParallelism() < 2)
+            return new Parser(tokens, reporter).parse();
+
+        Events.Parse event = new Events.Parse();
+        event.begin();
+        List<Range> ranges = split(rangeCount);
+        List<ForkJoinTask<Range>> tasks = new ArrayList<>(ranges.size());
+        for (Range range : ranges)
+            tasks.add(pool.submit(range::parse));
+
+        List<Stmt> statements = new ArrayList<>();
+        for (int i = 0; i < tasks.size();) {
+            Range range = tasks.get(i++).join();
+            if (!range.errors.hadError) {
+                statements.addAll(range.statements);
+                continue;
+            }
+
+            Parser parser = new Parser(tokens, reporter, range.from, Integer.MAX_VALUE);
+            while (true) {
+                // the ranges the sequential parse went past are no use any more
+                while (i < ranges.size() && ranges.get(i).from < parser.position())
+                    i++;
+                if (parser.isAtEnd() || (i < ranges.size() && ranges.get(i).from == parser.position()))
+                    break;
+                statements.add(parser.nextDeclaration());
+            }
+        }
+
+        if (event.shouldCommit()) {
+            event.tokens = tokens.size();
+            event.statements = statements.size();
+            event.commit();
+        }
+        return statements;
+    }
+
+    // about count ranges of about the same number of tokens, each but the last ending in a ";"
+    private List<Range> split(int count) {
+        List<Range> ranges = new ArrayList<>(count);
+        // index of the EOF token
+        int last = tokens.size() - 1;
+        int from = 0;
+        for (int i = 1; i < count; i++) {
+            int to = Math.max(from, (int) ((long) last * i / count));
+            while (to < last && tokens.type(to) != SEMICOLON)
+                to++;
+            // nothing after the ";" but EOF, the last range takes it
+            if (to + 1 >= last)
+                break;
+            ranges.add(new Range(from, to + 1));
+            from = to + 1;
+        }
+        ranges.add(new Range(from, Integer.MAX_VALUE));
+        return ranges;
+    }
+
+    // the tokens from (inclusive) to (exclusive), parsed on their own
+    private class Range {
+        final int from;
+        final int to;
+        final PendingErrors errors = new PendingErrors();
+        final List<Stmt> statements = new ArrayList<>();
+
+        Range(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        Range parse() {
+            Parser parser = new Parser(tokens, errors, from, to);
+            while (!parser.isAtEnd())
+                statements.add(parser.nextDeclaration());
+            return this;
+        }
+    }
+}
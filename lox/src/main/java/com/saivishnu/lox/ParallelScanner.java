@@ -0,0 +1,141 @@
+package com.saivishnu.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * The ParallelScanner class scans a large source on several threads, for
+ * --parallel-scan. The tokens, lines, symbol ids and errors are the same the
+ * Scanner gives, in the same order.
+ * The source is cut into chunks right after a newline and every chunk is
+ * scanned on the fork/join pool with a SymbolTable of its own, lines counted
+ * from 1. Then, in order, the tokens of each chunk are added to one buffer
+ * with their lines moved down by the newlines of the chunks before it and
+ * their symbol ids mapped to the real table.
+ * A comment ends at its newline, so the only place a newline can hide in is
+ * a string literal. Finding out where the strings are would take a
+ * sequential pass, so instead a chunk is scanned as if it started outside of
+ * one: a chunk that ends inside an unterminated string means the chunk after
+ * it was cut in the middle of that string, and the two are scanned again as
+ * one.
+ * Below THRESHOLD chars cutting and stitching costs more than it saves and
+ * the plain Scanner is used.
+ */
+class ParallelScanner {
+    static final int THRESHOLD = 1 << 20;
+    // more chunks than threads, so one slow chunk doesn't keep the others waiting
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final Source source;
+    private final ErrorReporter reporter;
+    private final SymbolTable symbols;
+    private final ForkJoinPool pool;
+    // shortest source that is cut into chunks, and about how many it is cut into
+    private final int threshold;
+    private final int chunkCount;
+
+    ParallelScanner(Source source, ErrorReporter reporter, SymbolTable symbols) {
+        this(source, reporter, symbols, ForkJoinPool.commonPool());
+    }
+
+    ParallelScanner(Source source, ErrorReporter reporter, SymbolTable symbols, ForkJoinPool pool) {
+        this(source, reporter, symbols, pool, THRESHOLD, pool.getParallelism() * CHUNKS_PER_THREAD);
+    }
+
+    // tests cut small sources into many chunks, so tokens end up across their edges
+    ParallelScanner(Source source, ErrorReporter reporter, SymbolTable symbols, ForkJoinPool pool, int threshold,
+            int chunkCount) {
+        this.source = source;
+        this.reporter = reporter;
+        this.symbols = symbols;
+        this.pool = pool;
+        this.threshold = threshold;
+        this.chunkCount = chunkCount;
+    }
+
+    TokenBuffer scan() {
+        if (source.length() < threshold || pool.getParallelism() < 2)
+            return new Scanner(source, reporter, symbols).scan();
+
+        Events.Scan event = new Events.Scan();
+        event.begin();
+        List<Chunk> chunks = split(chunkCount);
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks)
+            tasks.add(pool.submit(chunk::scan));
+
+        TokenBuffer tokens = new TokenBuffer(source, symbols);
+        int lineOffset = 0;
+        for (int i = 0; i < tasks.size();) {
+            Chunk chunk = tasks.get(i++).join();
+            // the chunks after it were cut inside a string, scan them with it
+            while (chunk.scanner.endedInString() && i < tasks.size()) {
+                Chunk next = tasks.get(i++).join();
+                chunk = new Chunk(chunk.from, next.to).scan();
+            }
+            chunk.stitch(tokens, lineOffset);
+            lineOffset += chunk.scanner.line() - 1;
+        }
+        tokens.add(TokenType.EOF, source.length(), 0, lineOffset + 1);
+
+        if (event.shouldCommit()) {
+            event.sourceLength = source.length();
+            event.tokens = tokens.size();
+            event.commit();
+        }
+        return tokens;
+    }
+
+    // about count chunks of about the same length, each but the last ending in a newline
+    private List<Chunk> split(int count) {
+        List<Chunk> chunks = new ArrayList<>(count);
+        int length = source.length();
+        int from = 0;
+        for (int i = 1; i < count && from < length; i++) {
+            int to = (int) ((long) length * i / count);
+            if (to < from)
+                to = from;
+            while (to < length && source.charAt(to) != '\n')
+                to++;
+            if (to >= length)
+                break;
+            chunks.add(new Chunk(from, to + 1));
+            from = to + 1;
+        }
+        chunks.add(new Chunk(from, length));
+        return chunks;
+    }
+
+    // the chars from (inclusive) to (exclusive), scanned on their own
+    private class Chunk {
+        final int from;
+        final int to;
+        final SymbolTable chunkSymbols = new SymbolTable();
+        final PendingErrors errors = new PendingErrors();
+        Scanner scanner;
+        TokenBuffer tokens;
+
+        Chunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        Chunk scan() {
+            scanner = new Scanner(source, errors, chunkSymbols, 1, from, to);
+            tokens = scanner.scanToEnd();
+            return this;
+        }
+
+        // add the tokens and errors of this chunk, which starts on line lineOffset + 1
+        void stitch(TokenBuffer into, int lineOffset) {
+            // in chunk order every name gets the id it would have had scanning sequentially
+            int[] symbolMap = new int[chunkSymbols.size()];
+            for (int id = 0; id < symbolMap.length; id++)
+                symbolMap[id] = symbols.intern(chunkSymbols.name(id));
+            into.append(tokens, lineOffset, symbolMap);
+            errors.replay(reporter, lineOffset);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.saivishnu.lox;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import static com.saivishnu.lox.TokenType.*;
@@ -11,11 +12,27 @@ public class Parser {
     private static class ParseError extends RuntimeException {
     }
 
-    private final List<Token> tokens;
+    private final TokenBuffer tokens;
+    private final ErrorReporter reporter;
     private int current = 0;
+    // the parser stops here as if it was the end, see ParallelParser
+    private final int end;
 
-    Parser(List<Token> tokens) {
+    // errors go straight to stderr
+    Parser(TokenBuffer tokens) {
+        this(tokens, new ErrorReporter(System.err));
+    }
+
+    Parser(TokenBuffer tokens, ErrorReporter reporter) {
+        this(tokens, reporter, 0, Integer.MAX_VALUE);
+    }
+
+    // only the tokens from (inclusive) to (exclusive), or up to EOF if that comes first
+    Parser(TokenBuffer tokens, ErrorReporter reporter, int from, int to) {
         this.tokens = tokens;
+        this.reporter = reporter;
+        this.current = from;
+        this.end = to;
     }
 
     /*
@@ -33,17 +50,64 @@ public class Parser {
 
     // initial method to start the parser
     List<Stmt> parse() {
+        Events.Parse event = new Events.Parse();
+        event.begin();
         List<Stmt> statements = new ArrayList<>();
         while (!isAtEnd()) {
-            statements.add(statement());
+            statements.add(declaration());
+        }
+        if (event.shouldCommit()) {
+            event.tokens = tokens.size();
+            event.statements = statements.size();
+            event.commit();
         }
         return statements;
     }
 
+    /*
+     * one declaration at a time, for IncrementalParser: position() is the index
+     * of the token the next declaration starts at, nextDeclaration() parses it
+     * (null if it had a syntax error, like in parse()).
+     */
+    int position() {
+        return current;
+    }
+
+    Stmt nextDeclaration() {
+        return declaration();
+    }
+
+    // declarations are statements that bind names, everything else is a statement
+    private Stmt declaration() {
+        try {
+            if (match(VAR))
+                return varDeclaration();
+            return statement();
+        } catch (ParseError error) {
+            // skip to the next statement so one mistake doesn't cascade
+            synchronize();
+            return null;
+        }
+    }
+
+    // var name ( "=" expression )? ";"
+    private Stmt varDeclaration() {
+        Token name = consume(IDENTIFIER, "Expect variable name.");
+
+        Expr initializer = null;
+        if (match(EQUAL))
+            initializer = expression();
+
+        consume(SEMICOLON, "Expect ';' after variable declaration.");
+        return new Stmt.Var(name, initializer);
+    }
+
     // check which statement is being passed and call the respective
     private Stmt statement() {
         if (match(PRINT))
             return printStatement();
+        if (match(SPAWN))
+            return spawnStatement();
         return expressionStatement();
     }
 
@@ -54,6 +118,23 @@ public class Parser {
         return new Stmt.Print(value);
     }
 
+    // "spawn" statement, the statement runs as a task of its own
+    private Stmt spawnStatement() {
+        // spawn spawn ... is a loop, not a call per keyword, and limited like expressions
+        List<Token> keywords = new ArrayList<>();
+        keywords.add(previous());
+        while (match(SPAWN)) {
+            if (keywords.size() == MAX_DEPTH)
+                throw error(previous(), "Spawn nested too deeply.");
+            keywords.add(previous());
+        }
+
+        Stmt body = statement();
+        for (int i = keywords.size() - 1; i >= 0; i--)
+            body = new Stmt.Spawn(keywords.get(i), body);
+        return body;
+    }
+
     // expression method
     private Stmt expressionStatement() {
         Expr expr = expression();
@@ -77,122 +158,272 @@ public class Parser {
      * comparison -> term ( ( ">" | ">=" | "<" | "<=" ) term )*
      * term -> factor ( ( "-" | "+" ) factor )*
      * factor -> unary ( ( "/" | "*" ) unary )*
-     * unary -> ( "!" | "-" ) unary | primary
-     * primary -> NUMBER | STRING | "true" | "false" | "nil" | "(" expression ")"
+     * unary -> ( "!" | "-" ) unary | call
+     * call -> primary ( "(" arguments? ")" )*
+     * arguments -> expression ( "," expression )*
+     * primary -> NUMBER | STRING | "true" | "false" | "nil" | IDENTIFIER | "(" expression ")"
      */
 
     /*
-     * ********** Methods that check the equation follow these steps **************
-     * first assume that it isn't the current condition and then check for it,
-     * if it is a match then make it the operator,
-     * then assume the right side of it is the next precedence.
+     * the grammar above without a method per level: expression() is a Pratt
+     * parser. PREFIX says what a token does where an operand starts, INFIX how
+     * tightly a binary operator binds. instead of calling itself for the right
+     * side of an operator, a group or an argument, it keeps what is waiting on
+     * a stack of frames (and the finished operands on a stack of their own), so
+     * deeply nested expressions don't overflow the Java stack.
+     * when an operator comes in, the frames that bind at least as tightly are
+     * reduced first, which makes binary operators left associative and gives
+     * the same trees as the method per level did.
      */
 
-    private Expr expression() {
-        return equality();
+    // what a token does where an operand starts
+    private static final byte NO_PREFIX = 0;
+    private static final byte LITERAL = 1;
+    private static final byte VARIABLE = 2;
+    private static final byte GROUP = 3;
+    private static final byte UNARY = 4;
+    private static final byte[] PREFIX = new byte[TokenType.values().length];
+
+    // how tightly a binary operator binds, 0 for a token that isn't one
+    private static final byte[] INFIX = new byte[TokenType.values().length];
+    // prefix operators bind tighter than any binary one
+    private static final byte UNARY_PRECEDENCE = 5;
+
+    static {
+        for (TokenType type : new TokenType[] { FALSE, TRUE, NIL, NUMBER, STRING })
+            PREFIX[type.ordinal()] = LITERAL;
+        PREFIX[IDENTIFIER.ordinal()] = VARIABLE;
+        PREFIX[LEFT_PAREN.ordinal()] = GROUP;
+        PREFIX[BANG.ordinal()] = UNARY;
+        PREFIX[MINUS.ordinal()] = UNARY;
+
+        // equality, comparison, term, factor
+        INFIX[BANG_EQUAL.ordinal()] = INFIX[EQUAL_EQUAL.ordinal()] = 1;
+        INFIX[GREATER.ordinal()] = INFIX[GREATER_EQUAL.ordinal()] = 2;
+        INFIX[LESS.ordinal()] = INFIX[LESS_EQUAL.ordinal()] = 2;
+        INFIX[MINUS.ordinal()] = INFIX[PLUS.ordinal()] = 3;
+        INFIX[SLASH.ordinal()] = INFIX[STAR.ordinal()] = 4;
     }
 
-    private Expr equality() {
-        // !=, ==
-        Expr expr = comparison();
+    /*
+     * deepest nesting of expressions (and longest spawn spawn ... chain) the
+     * parser takes. it doesn't need the Java stack for them, but the resolver,
+     * the optimizer and the backends walk the tree recursively. anything
+     * deeper is a syntax error instead of a StackOverflowError in one of them.
+     * groupings, unary operands, right operands, callees and arguments nest;
+     * a long chain like 1 + 2 + 3 + ... down the left side of binary operators
+     * doesn't, every pass walks it in a loop (see Chains.of()).
+     */
+    static final int MAX_DEPTH = 1000;
+
+    // the kinds of frame. GROUP and UNARY are the ones above
+    private static final byte BINARY = 5;
+    private static final byte CALL = 6;
+
+    // frames: kind, precedence (arguments so far for a call), operator token
+    private byte[] frameKinds = new byte[32];
+    private int[] frameValues = new int[32];
+    private Token[] frameTokens = new Token[32];
+    private int frames = 0;
+    // finished operands and how deeply each one nests, see MAX_DEPTH
+    private Expr[] operands = new Expr[32];
+    private int[] operandDepths = new int[32];
+    private int operandCount = 0;
+
+    private Expr expression() {
+        // whatever a syntax error left behind
+        while (frames > 0)
+            frameTokens[--frames] = null;
+        while (operandCount > 0)
+            operands[--operandCount] = null;
+
+        for (;;) {
+            // an operand: prefix operators and groups, until there is a primary
+            Expr primary = null;
+            while (primary == null) {
+                TokenType type = peekType();
+                switch (PREFIX[type.ordinal()]) {
+                    case LITERAL:
+                        advance();
+                        primary = literal(type);
+                        break;
+                    case VARIABLE:
+                        advance();
+                        primary = new Expr.Variable(previous());
+                        break;
+                    case GROUP:
+                        advance();
+                        pushFrame(GROUP, 0, null);
+                        break;
+                    case UNARY:
+                        advance();
+                        pushFrame(UNARY, UNARY_PRECEDENCE, previous());
+                        break;
+                    default:
+                        throw error(peek(), "Expect expression.");
+                }
+            }
+            pushOperand(primary, 1);
 
-        while (match(BANG_EQUAL, EQUAL_EQUAL)) {
-            Token operator = previous();
-            Expr right = comparison();
-            expr = new Expr.Binary(expr, operator, right);
+            // then calls on the top operand, until a binary operator or the end of an operand comes
+            for (;;) {
+                TokenType type = peekType();
+                if (type == LEFT_PAREN) {
+                    // a(b)(c) calls whatever a(b) returns
+                    advance();
+                    pushFrame(CALL, 0, null);
+                    if (!check(RIGHT_PAREN))
+                        break;
+                    finishCall();
+                    continue;
+                }
+
+                int precedence = INFIX[type.ordinal()];
+                if (precedence > 0) {
+                    advance();
+                    reduce(precedence);
+                    pushFrame(BINARY, precedence, previous());
+                    break;
+                }
+
+                // the end of the expression, of a group or of an argument
+                reduce(1);
+                if (frames == 0)
+                    return popOperand();
+                if (frameKinds[frames - 1] == GROUP) {
+                    frames--;
+                    consume(RIGHT_PAREN, "Expect ')' after expression.");
+                    int depth = operandDepths[operandCount - 1] + 1;
+                    pushNode(new Expr.Grouping(popOperand()), depth, previous());
+                    continue;
+                }
+
+                int arguments = ++frameValues[frames - 1];
+                if (match(COMMA)) {
+                    // report it but keep parsing, the parser is not confused
+                    if (arguments >= 255)
+                        error(peek(), "Can't have more than 255 arguments.");
+                    break;
+                }
+                finishCall();
+            }
         }
-        return expr;
     }
 
-    private Expr comparison() {
-        // <, <=, >, >=
-        Expr expr = term();
-
-        while (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
-            Token operator = previous();
-            Expr right = term();
-            expr = new Expr.Binary(expr, operator, right);
+    // turn the frames that bind at least as tightly as precedence into nodes
+    private void reduce(int precedence) {
+        while (frames > 0) {
+            byte kind = frameKinds[frames - 1];
+            if ((kind != BINARY && kind != UNARY) || frameValues[frames - 1] < precedence)
+                return;
+            Token operator = frameTokens[--frames];
+            frameTokens[frames] = null;
+            int depth = operandDepths[operandCount - 1];
+            Expr right = popOperand();
+            if (kind == UNARY) {
+                pushNode(new Expr.Unary(operator, right), depth + 1, operator);
+            } else {
+                int leftDepth = operandDepths[operandCount - 1];
+                Expr left = popOperand();
+                // past Chains.LONG operators, a + b + c + ... runs in a loop:
+                // a left operand that is a binary too is the same chain, not a level deeper
+                if (chainLength(left) >= Chains.LONG)
+                    depth = Math.max(depth + 1, leftDepth);
+                else
+                    depth = Math.max(depth, leftDepth) + 1;
+                pushNode(new Expr.Binary(left, operator, right), depth, operator);
+            }
         }
-        return expr;
     }
 
-    private Expr term() {
-        // -, +
-        Expr expr = factor();
-
-        while (match(MINUS, PLUS)) {
-            Token operator = previous();
-            Expr right = factor();
-            expr = new Expr.Binary(expr, operator, right);
+    // binary operators down the left side of expr, counted up to Chains.LONG
+    private static int chainLength(Expr expr) {
+        int length = 0;
+        while (expr instanceof Expr.Binary && length < Chains.LONG) {
+            length++;
+            expr = ((Expr.Binary) expr).left;
         }
+        return length;
+    }
 
-        return expr;
+    // the ")" of the call on top of the frames, its callee and arguments are the top operands
+    private void finishCall() {
+        Token paren = consume(RIGHT_PAREN, "Expect ')' after arguments.");
+        int count = frameValues[--frames];
+        List<Expr> arguments = new ArrayList<>(count);
+        int depth = 0;
+        for (int i = operandCount - count; i < operandCount; i++) {
+            arguments.add(operands[i]);
+            depth = Math.max(depth, operandDepths[i]);
+        }
+        for (int i = 0; i < count; i++)
+            operands[--operandCount] = null;
+        depth = Math.max(depth, operandDepths[operandCount - 1]);
+        pushNode(new Expr.Call(popOperand(), paren, arguments), depth + 1, paren);
     }
 
-    private Expr factor() {
-        // /, *
-        Expr expr = unary();
+    // push a node made of operands, unless its tree is deeper than the passes after the parser can take
+    private void pushNode(Expr node, int depth, Token token) {
+        if (depth > MAX_DEPTH)
+            throw error(token, "Expression nested too deeply.");
+        pushOperand(node, depth);
+    }
 
-        while (match(SLASH, STAR)) {
-            Token operator = previous();
-            Expr right = unary();
-            expr = new Expr.Binary(expr, operator, right);
+    private Expr literal(TokenType type) {
+        switch (type) {
+            case FALSE:
+                return new Expr.Literal(false);
+            case TRUE:
+                return new Expr.Literal(true);
+            case NIL:
+                return new Expr.Literal(null);
+            default:
+                // NUMBER or STRING
+                return new Expr.Literal(tokens.literal(current - 1));
         }
-
-        return expr;
     }
 
-    private Expr unary() {
-        // !, -
-        if (match(BANG, MINUS)) {
-            Token operator = previous();
-            Expr right = unary();
-            // return directly as it is either Unary or primary values
-            return new Expr.Unary(operator, right);
+    private void pushFrame(byte kind, int value, Token token) {
+        if (frames == frameKinds.length) {
+            frameKinds = Arrays.copyOf(frameKinds, frames * 2);
+            frameValues = Arrays.copyOf(frameValues, frames * 2);
+            frameTokens = Arrays.copyOf(frameTokens, frames * 2);
         }
-        // if not unary, it is primary
-        return primary();
-    }
-
-    private Expr primary() {
-        // NUMBER, STRING, "true", "false", "nil", "(", expression, ")"
-        if (match(FALSE))
-            return new Expr.Literal(false);
-        if (match(TRUE))
-            return new Expr.Literal(true);
-        if (match(NIL))
-            return new Expr.Literal(null);
-
-        if (match(NUMBER, STRING))
-            return new Expr.Literal(previous().literal);
-
-        if (match(LEFT_PAREN)) {
-            // create another expression inside the (here),
-            // then check if it is a ")" and give an error if it isn't.
-            Expr expr = expression();
-            consume(RIGHT_PAREN, "Expect ')' after expression.");
-            return new Expr.Grouping(expr);
+        frameKinds[frames] = kind;
+        frameValues[frames] = value;
+        frameTokens[frames++] = token;
+    }
+
+    private void pushOperand(Expr operand, int depth) {
+        if (operandCount == operands.length) {
+            operands = Arrays.copyOf(operands, operandCount * 2);
+            operandDepths = Arrays.copyOf(operandDepths, operandCount * 2);
         }
+        operandDepths[operandCount] = depth;
+        operands[operandCount++] = operand;
+    }
 
-        // if none of the above primary or grouping, throw an error
-        throw error(peek(), "Expect expression.");
+    private Expr popOperand() {
+        Expr operand = operands[--operandCount];
+        operands[operandCount] = null;
+        return operand;
     }
 
-    // used to check if the operator is same as expected
-    private boolean match(TokenType... types) {
-        for (TokenType type : types) {
-            if (check(type)) {
-                advance();
-                return true;
-            }
+    // used to check if the current token is the expected one, and skip it if it is
+    private boolean match(TokenType type) {
+        if (check(type)) {
+            advance();
+            return true;
         }
         return false;
     }
 
     // perform a check and send a error if it isn't
     private Token consume(TokenType type, String message) {
-        if (check(type))
-            return advance();
+        if (check(type)) {
+            advance();
+            return previous();
+        }
 
         throw error(peek(), message);
     }
@@ -201,34 +432,42 @@ public class Parser {
     private boolean check(TokenType type) {
         if (isAtEnd())
             return false;
-        return peek().type == type;
+        return tokens.type(current) == type;
     }
 
-    // go to next one
-    private Token advance() {
-        if (!isAtEnd())
+    // go to next one. no Token object is made, use previous() if one is needed
+    private void advance() {
+        if (!isAtEnd()) {
             current++;
-        return previous();
+            // streaming: the scanner is only this far, ask it for more
+            if (current == tokens.size())
+                tokens.more();
+        }
+    }
+
+    // type of the current token, EOF at the end (of the range, too)
+    private TokenType peekType() {
+        return isAtEnd() ? EOF : tokens.type(current);
     }
 
     // check end of token stream
-    private boolean isAtEnd() {
-        return peek().type == EOF;
+    boolean isAtEnd() {
+        return current >= end || tokens.type(current) == EOF;
     }
 
     // get the current token without going to next one
     private Token peek() {
-        return tokens.get(current);
+        return tokens.token(current);
     }
 
     // get previous token without going to previous one
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokens.token(current - 1);
     }
 
     // error handling
     private ParseError error(Token token, String message) {
-        Lox.error(token, message);
+        reporter.error(token, message);
         return new ParseError();
     }
 
@@ -242,9 +481,9 @@ public class Parser {
 
         while (!isAtEnd()) {
             // if it is at the end of tokens, stop skipping
-            if (previous().type == SEMICOLON)
+            if (tokens.type(current - 1) == SEMICOLON)
                 return;
-            switch (peek().type) {
+            switch (tokens.type(current)) {
                 case CLASS:
                 case FUN:
                 case VAR:
@@ -253,6 +492,7 @@ public class Parser {
                 case WHILE:
                 case PRINT:
                 case RETURN:
+                case SPAWN:
                     // if it is the next statement, stop skipping
                     return;
                 default:
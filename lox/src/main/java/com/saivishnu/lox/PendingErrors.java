@@ -0,0 +1,31 @@
+package com.saivishnu.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The PendingErrors class is an ErrorReporter that keeps syntax errors
+ * instead of printing them, for work that may turn out to be thrown away
+ * (a parse window that was too small, a chunk scanned from the wrong state).
+ * Once the work is kept, its errors are handed on to the real reporter.
+ */
+class PendingErrors extends ErrorReporter {
+    final List<LoxError> errors = new ArrayList<>();
+
+    PendingErrors() {
+        // nothing is printed, report() is overridden
+        super(null);
+    }
+
+    @Override
+    void report(int line, String where, String message) {
+        errors.add(new LoxError(LoxError.Kind.SYNTAX, line, where, message));
+        hadError = true;
+    }
+
+    // report every error to reporter, lineOffset lines further down
+    void replay(ErrorReporter reporter, int lineOffset) {
+        for (LoxError error : errors)
+            reporter.report(error.line() + lineOffset, error.where(), error.message());
+    }
+}
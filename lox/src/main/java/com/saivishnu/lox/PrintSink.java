@@ -0,0 +1,45 @@
+package com.saivishnu.lox;
+
+import java.io.PrintStream;
+
+/**
+ * The PrintSink interface is where print statements send their text.
+ * Sinks are shared by every task of a run, so they have to be thread-safe and
+ * keep the order of the lines printed by any one thread.
+ */
+interface PrintSink {
+
+    // print a line of text
+    void println(String text);
+
+    // print a number as a line, sinks can write it without making a String first
+    default void println(double number) {
+        println(NumberText.toString(number));
+    }
+
+    // push anything buffered out to the underlying stream
+    void flush();
+
+    // flush and stop any threads the sink started, the sink can't be used after this
+    void close();
+
+    // straight through to a PrintStream, no buffering of our own
+    static PrintSink of(PrintStream out) {
+        return new PrintSink() {
+            @Override
+            public void println(String text) {
+                out.println(text);
+            }
+
+            @Override
+            public void flush() {
+                out.flush();
+            }
+
+            @Override
+            public void close() {
+                out.flush();
+            }
+        };
+    }
+}
@@ -0,0 +1,313 @@
+package com.saivishnu.lox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The Profile class collects what --profile measured and reports it.
+ * For every node it knows how often it ran, how long it took in total and how
+ * much of that was spent in the node itself rather than the nodes under it
+ * ("self" time). Nodes are attributed to the line of their token; nodes
+ * without one (literals, groupings) to the line of the first token under
+ * them, or else of the node they are part of.
+ *
+ * report() prints the lines sorted by self time, then the hottest nodes.
+ * writeCollapsed() writes the call paths in the collapsed stack format that
+ * flamegraph.pl, speedscope and friends read: one "frame;frame;frame value"
+ * line per path, the value being self time in microseconds. Every path that
+ * ran is there, a path that took less than a microsecond with 0.
+ *
+ * Each thread records into a Recorder of its own, so recording takes no locks.
+ * The numbers include some of the profiler's own overhead, compare them with
+ * each other rather than with a run without --profile.
+ */
+class Profile {
+    private static final int HOT_NODES = 10;
+
+    private final Queue<Recorder> recorders = new ConcurrentLinkedQueue<>();
+
+    Recorder recorder() {
+        return add(new Recorder("script"));
+    }
+
+    private Recorder add(Recorder recorder) {
+        recorders.add(recorder);
+        return recorder;
+    }
+
+    // call after the runs are over, tasks included
+    void report(PrintStream err) {
+        // a node may have run on several threads
+        Map<Object, Node> nodes = new IdentityHashMap<>();
+        for (Recorder recorder : recorders) {
+            for (Node node : recorder.nodes.values()) {
+                Node sum = nodes.get(node.key);
+                if (sum == null)
+                    nodes.put(node.key, sum = new Node(node.key, node.line, node.label));
+                sum.runs += node.runs;
+                sum.total += node.total;
+                sum.self += node.self;
+            }
+        }
+        if (nodes.isEmpty()) {
+            err.println("[profile] nothing ran");
+            return;
+        }
+
+        // line -> statements run, nodes run, self time
+        Map<Integer, long[]> lines = new TreeMap<>();
+        long self = 0;
+        long runs = 0;
+        for (Node node : nodes.values()) {
+            long[] line = lines.computeIfAbsent(node.line, key -> new long[3]);
+            if (node.key instanceof Stmt)
+                line[0] += node.runs;
+            line[1] += node.runs;
+            line[2] += node.self;
+            self += node.self;
+            runs += node.runs;
+        }
+
+        err.printf("[profile] %d nodes run in %.3f ms%n", runs, self / 1e6);
+        err.printf("[profile] %6s %12s %7s %10s %10s%n", "line", "self ms", "%", "stmts", "nodes");
+        List<Map.Entry<Integer, long[]>> hotLines = new ArrayList<>(lines.entrySet());
+        hotLines.sort((a, b) -> Long.compare(b.getValue()[2], a.getValue()[2]));
+        for (Map.Entry<Integer, long[]> line : hotLines) {
+            long[] counts = line.getValue();
+            err.printf("[profile] %6s %12.3f %6.1f%% %10d %10d%n", lineName(line.getKey()), counts[2] / 1e6,
+                    percent(counts[2], self), counts[0], counts[1]);
+        }
+
+        List<Node> hotNodes = new ArrayList<>(nodes.values());
+        hotNodes.sort((a, b) -> Long.compare(b.self, a.self));
+        err.println("[profile] hottest nodes:");
+        for (Node node : hotNodes.subList(0, Math.min(HOT_NODES, hotNodes.size())))
+            err.printf("[profile] %6s %12.3f %6.1f%% %10d  %s%n", lineName(node.line), node.self / 1e6,
+                    percent(node.self, self), node.runs, node.label);
+    }
+
+    // the collapsed stacks of every recorder, merged
+    void writeCollapsed(Path path) throws IOException {
+        Map<String, Long> stacks = new TreeMap<>();
+        for (Recorder recorder : recorders) {
+            String[] names = new String[recorder.paths];
+            for (int id = 0; id < recorder.paths; id++) {
+                // a parent path always has a smaller id than its children
+                int parent = recorder.pathParent[id];
+                String prefix = parent < 0 ? recorder.root : names[parent];
+                names[id] = prefix + ";" + recorder.pathNode[id].frame();
+                stacks.merge(names[id], recorder.pathSelf[id], Long::sum);
+            }
+        }
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> stack : stacks.entrySet())
+                writer.write(stack.getKey() + " " + stack.getValue() / 1000 + "\n");
+        }
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+
+    private static String lineName(int line) {
+        return line > 0 ? Integer.toString(line) : "?";
+    }
+
+    // what --profile knows about one node
+    private static class Node {
+        final Object key;
+        final int line;
+        final String label;
+        // order the recorder first saw it in
+        int index = 0;
+        long runs = 0;
+        // nanoseconds, with and without the nodes under it
+        long total = 0;
+        long self = 0;
+
+        Node(Object key, int line, String label) {
+            this.key = key;
+            this.line = line;
+            this.label = label;
+        }
+
+        String frame() {
+            return label + " (line " + lineName(line) + ")";
+        }
+    }
+
+    /*
+     * the counters of one thread. enter() and exit() keep a stack of the nodes
+     * running right now; a node's self time is its time minus the time of the
+     * nodes it ran. every distinct stack (call path) gets an id, so collapsed
+     * stacks are only turned into strings once, at the end.
+     */
+    class Recorder {
+        // collapsed stack the paths of this recorder start from
+        private final String root;
+        private final Map<Object, Node> nodes = new IdentityHashMap<>();
+
+        // path id -> parent path id (-1 for none), its innermost node, self time
+        private final Map<Long, Integer> pathIds = new HashMap<>();
+        private int[] pathParent = new int[64];
+        private Node[] pathNode = new Node[64];
+        private long[] pathSelf = new long[64];
+        private int paths = 0;
+
+        // the nodes running right now, innermost last
+        private Node[] stack = new Node[64];
+        private int[] stackPath = new int[64];
+        private long[] stackStart = new long[64];
+        private long[] stackChildren = new long[64];
+        private int depth = 0;
+
+        private Recorder(String root) {
+            this.root = root;
+        }
+
+        // a recorder for a task spawned by the node running now
+        Recorder fork() {
+            StringBuilder path = new StringBuilder(root);
+            for (int i = 0; i < depth; i++)
+                path.append(';').append(stack[i].frame());
+            return add(new Recorder(path.toString()));
+        }
+
+        boolean isRunning(Object key) {
+            return depth > 0 && stack[depth - 1].key == key;
+        }
+
+        void enter(Object key) {
+            Node node = nodes.get(key);
+            if (node == null)
+                node = newNode(key);
+            if (depth == stack.length)
+                growStack();
+
+            stack[depth] = node;
+            stackPath[depth] = path(depth == 0 ? -1 : stackPath[depth - 1], node);
+            stackChildren[depth] = 0;
+            // last, so the bookkeeping above isn't counted
+            stackStart[depth++] = System.nanoTime();
+        }
+
+        void exit() {
+            long elapsed = System.nanoTime() - stackStart[--depth];
+            Node node = stack[depth];
+            long self = elapsed - stackChildren[depth];
+            node.runs++;
+            node.total += elapsed;
+            node.self += self;
+            pathSelf[stackPath[depth]] += self;
+            stack[depth] = null;
+            if (depth > 0)
+                stackChildren[depth - 1] += elapsed;
+        }
+
+        private Node newNode(Object key) {
+            int line = lineOf(key);
+            // a literal or a grouping of literals, it belongs to whatever it is in
+            if (line < 0 && depth > 0)
+                line = stack[depth - 1].line;
+            Node node = new Node(key, line, labelOf(key));
+            node.index = nodes.size();
+            nodes.put(key, node);
+            return node;
+        }
+
+        private int path(int parent, Node node) {
+            // the parent and the node together name the path
+            long key = ((long) (parent + 1) << 32) | node.index;
+            Integer id = pathIds.get(key);
+            return id != null ? id : newPath(parent, node, key);
+        }
+
+        private int newPath(int parent, Node node, long key) {
+            if (paths == pathParent.length) {
+                pathParent = Arrays.copyOf(pathParent, paths * 2);
+                pathNode = Arrays.copyOf(pathNode, paths * 2);
+                pathSelf = Arrays.copyOf(pathSelf, paths * 2);
+            }
+            int id = paths++;
+            pathParent[id] = parent;
+            pathNode[id] = node;
+            pathIds.put(key, id);
+            return id;
+        }
+
+        private void growStack() {
+            stack = Arrays.copyOf(stack, depth * 2);
+            stackPath = Arrays.copyOf(stackPath, depth * 2);
+            stackStart = Arrays.copyOf(stackStart, depth * 2);
+            stackChildren = Arrays.copyOf(stackChildren, depth * 2);
+        }
+    }
+
+    // line of the node's own token, or of the first token under it, -1 if there is none
+    static int lineOf(Object node) {
+        if (node instanceof Expr.Binary) {
+            // the first operand of a + b + c + ..., found with a loop
+            Expr.Binary first = (Expr.Binary) node;
+            while (first.left instanceof Expr.Binary)
+                first = (Expr.Binary) first.left;
+            int line = lineOf(first.left);
+            return line >= 0 ? line : first.operator.line;
+        }
+        if (node instanceof Expr.Call)
+            return lineOf(((Expr.Call) node).callee);
+        if (node instanceof Expr.Grouping)
+            return lineOf(((Expr.Grouping) node).expression);
+        if (node instanceof Expr.Unary)
+            return ((Expr.Unary) node).operator.line;
+        if (node instanceof Expr.Variable)
+            return ((Expr.Variable) node).name.line;
+        if (node instanceof Stmt.Expression)
+            return lineOf(((Stmt.Expression) node).expression);
+        if (node instanceof Stmt.Print)
+            return lineOf(((Stmt.Print) node).expression);
+        if (node instanceof Stmt.Spawn)
+            return ((Stmt.Spawn) node).keyword.line;
+        if (node instanceof Stmt.Var)
+            return ((Stmt.Var) node).name.line;
+        // literals
+        return -1;
+    }
+
+    // short description of a node, for the report and the stack frames
+    static String labelOf(Object node) {
+        if (node instanceof Expr.Binary)
+            return "binary " + ((Expr.Binary) node).operator.lexeme;
+        if (node instanceof Expr.Call)
+            return "call";
+        if (node instanceof Expr.Grouping)
+            return "group";
+        if (node instanceof Expr.Literal)
+            return "literal";
+        if (node instanceof Expr.Unary)
+            return "unary " + ((Expr.Unary) node).operator.lexeme;
+        if (node instanceof Expr.Variable)
+            return "variable " + ((Expr.Variable) node).name.lexeme;
+        if (node instanceof Stmt.Expression)
+            return "expression";
+        if (node instanceof Stmt.Print)
+            return "print";
+        if (node instanceof Stmt.Spawn)
+            return "spawn";
+        if (node instanceof Stmt.Var)
+            return "var " + ((Stmt.Var) node).name.lexeme;
+        return node.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,63 @@
+package com.saivishnu.lox;
+
+/**
+ * The ProfilingInterpreter class is the Interpreter with a stopwatch on every
+ * node, used for --profile. Every Stmt and Expr it runs is counted and timed
+ * by a Profile.Recorder, which the Profile turns into a report by line when
+ * the session ends.
+ * All of it lives in the overrides below, the Interpreter itself has no
+ * profiling code: without --profile this class is never loaded and the normal
+ * path runs exactly as before.
+ */
+class ProfilingInterpreter extends Interpreter {
+    private final Profile.Recorder recorder;
+
+    ProfilingInterpreter(PrintSink out, ErrorReporter reporter, Profile profile) {
+        super(out, reporter);
+        this.recorder = profile.recorder();
+    }
+
+    // a spawned task, its nodes are recorded under the spawn statement
+    private ProfilingInterpreter(ProfilingInterpreter parent, Environment globals) {
+        super(parent, globals);
+        this.recorder = parent.recorder.fork();
+    }
+
+    @Override
+    Interpreter fork(Environment globals) {
+        return new ProfilingInterpreter(this, globals);
+    }
+
+    @Override
+    Object evaluate(Expr expr) {
+        // evaluateNumber() sends literals and variables here, they are timed already
+        if (recorder.isRunning(expr))
+            return super.evaluate(expr);
+        recorder.enter(expr);
+        try {
+            return super.evaluate(expr);
+        } finally {
+            recorder.exit();
+        }
+    }
+
+    @Override
+    double evaluateNumber(Expr expr) {
+        recorder.enter(expr);
+        try {
+            return super.evaluateNumber(expr);
+        } finally {
+            recorder.exit();
+        }
+    }
+
+    @Override
+    void execute(Stmt statement) {
+        recorder.enter(statement);
+        try {
+            super.execute(statement);
+        } finally {
+            recorder.exit();
+        }
+    }
+}
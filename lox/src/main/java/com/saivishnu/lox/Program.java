@@ -0,0 +1,30 @@
+package com.saivishnu.lox;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The Program class is a compiled (parsed and resolved) Lox source, made by
+ * Engine.compile().
+ * Nothing in it changes once it is compiled, except the self-specializing
+ * binary nodes (see BinaryNode). Those are rewritten without locking: two
+ * threads may race to rewrite the same site, but every node they can pick is
+ * correct for any operands, so a program can be shared between threads.
+ */
+public final class Program {
+    final List<Stmt> statements;
+    // name -> slot of every global the program declares or reads
+    final Map<String, Integer> globals;
+
+    Program(List<Stmt> statements, Map<String, Integer> globals) {
+        this.statements = Collections.unmodifiableList(statements);
+        this.globals = Collections.unmodifiableMap(globals);
+    }
+
+    /** Names of the globals the program declares or reads. */
+    public Set<String> globals() {
+        return globals.keySet();
+    }
+}
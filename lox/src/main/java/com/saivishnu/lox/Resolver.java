@@ -0,0 +1,172 @@
+package com.saivishnu.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Resolver class runs between the parser and the backends and works out
+ * where every variable lives, so name lookups don't happen at runtime.
+ * Each variable gets a (depth, slot) pair: how many environments to walk up
+ * from the current one and the index of the value in that environment.
+ * Only the global scope exists for now, so depth is always 0.
+ * Names are looked up by their SymbolTable id, a scope is an array indexed by
+ * it.
+ */
+class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    // symbol -> slot for each scope, innermost last. the global scope is kept
+    // between runs so the interactive prompt sees earlier declarations
+    private final List<Scope> scopes = new ArrayList<>();
+    private final SymbolTable symbols;
+
+    Resolver(SymbolTable symbols) {
+        this.symbols = symbols;
+        scopes.add(new Scope());
+        // native functions take the first global slots
+        for (String name : Natives.NAMES)
+            scopes.get(0).slotOf(symbols.intern(name));
+    }
+
+    void resolve(List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            statement.accept(this);
+        }
+    }
+
+    // name -> slot of every global seen so far
+    Map<String, Integer> globals() {
+        Map<String, Integer> globals = new HashMap<>();
+        Scope scope = scopes.get(0);
+        for (int symbol = 0; symbol < symbols.size(); symbol++) {
+            int slot = scope.get(symbol);
+            if (slot >= 0)
+                globals.put(symbols.name(symbol), slot);
+        }
+        return globals;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        resolve(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        resolve(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitSpawnStmt(Stmt.Spawn stmt) {
+        resolve(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        // the initializer first, var a = a; refers to the (undefined) a
+        if (stmt.initializer != null)
+            resolve(stmt.initializer);
+        stmt.slot = scopes.get(scopes.size() - 1).slotOf(stmt.name.symbol);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        // a + b + c + ... in a loop, left to right like one operator at a time
+        Expr.Binary[] chain = Chains.of(expr);
+        resolve(chain[0].left);
+        for (Expr.Binary link : chain)
+            resolve(link.right);
+        // the Interpreter runs a long one in a loop too
+        if (chain.length > Chains.LONG)
+            expr.links = chain;
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        resolve(expr.callee);
+        for (Expr argument : expr.arguments)
+            resolve(argument);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        resolve(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        // innermost scope that has the name wins
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            int slot = scopes.get(i).get(expr.name.symbol);
+            if (slot >= 0) {
+                expr.depth = scopes.size() - 1 - i;
+                expr.slot = slot;
+                return null;
+            }
+        }
+
+        /*
+         * not declared (yet). it can only be a global: give it a slot so a
+         * later declaration fills it, until then reading it is a runtime error.
+         */
+        expr.depth = scopes.size() - 1;
+        expr.slot = scopes.get(0).slotOf(expr.name.symbol);
+        return null;
+    }
+
+    private void resolve(Stmt stmt) {
+        stmt.accept(this);
+    }
+
+    private void resolve(Expr expr) {
+        expr.accept(this);
+    }
+
+    // symbol -> slot, -1 where the name isn't declared in the scope
+    private static class Scope {
+        private int[] slots = newSlots(64);
+        private int count = 0;
+
+        int get(int symbol) {
+            return symbol < slots.length ? slots[symbol] : -1;
+        }
+
+        // existing slot of a name in the scope, or the next free one
+        int slotOf(int symbol) {
+            if (symbol >= slots.length) {
+                int oldLength = slots.length;
+                slots = Arrays.copyOf(slots, Math.max(symbol + 1, oldLength * 2));
+                Arrays.fill(slots, oldLength, slots.length, -1);
+            }
+            if (slots[symbol] < 0)
+                slots[symbol] = count++;
+            return slots[symbol];
+        }
+
+        private static int[] newSlots(int size) {
+            int[] slots = new int[size];
+            Arrays.fill(slots, -1);
+            return slots;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.saivishnu.lox;
+
+import java.util.Map;
+
+/**
+ * The Result class is what one execution of a Program ended with: the runtime
+ * error that stopped it (if any), the globals it left behind and, when the
+ * Context had no output stream, everything it printed.
+ */
+public final class Result {
+    private final LoxError error;
+    private final Map<String, Object> globals;
+    private final String output;
+
+    Result(LoxError error, Map<String, Object> globals, String output) {
+        this.error = error;
+        this.globals = globals;
+        this.output = output;
+    }
+
+    /** True if the program ran to the end. */
+    public boolean succeeded() {
+        return error == null;
+    }
+
+    /** The runtime error that stopped the program, or null. */
+    public LoxError error() {
+        return error;
+    }
+
+    /**
+     * Every global that was defined when the program stopped, by name.
+     * Values are null (nil), Boolean, Double or String.
+     */
+    public Map<String, Object> globals() {
+        return globals;
+    }
+
+    /** What the program printed, or null if it went to the Context's stream. */
+    public String output() {
+        return output;
+    }
+}
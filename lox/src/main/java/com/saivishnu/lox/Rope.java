@@ -0,0 +1,104 @@
+package com.saivishnu.lox;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * The Rope class is a Lox string made by concatenating two others without
+ * copying them. Building a string piece by piece with + is then linear instead
+ * of quadratic: every + makes one small node, and the characters are copied
+ * once, when the text is needed (printing, ==, handing it to the caller).
+ * At runtime a Lox string is either a java String or a Rope, Rope.isString()
+ * checks for both. Short results are still concatenated right away, a rope
+ * only pays off for long strings.
+ * A rope never changes. Once flattened it keeps the text instead of its two
+ * parts, so the strings it was built from can be collected. Both live in one
+ * volatile field, so ropes can be shared between tasks: a task sees either
+ * the parts or the text, and at worst flattens the same rope twice.
+ */
+final class Rope {
+
+    // results up to this many chars are plain Strings
+    static final int FLAT_LIMIT = 256;
+
+    private final int length;
+    // the Parts it is made of, or the whole text once someone asked for it
+    private volatile Object content;
+
+    private Rope(Object left, Object right, int length) {
+        this.content = new Parts(left, right);
+        this.length = length;
+    }
+
+    // the two halves of a rope that isn't flattened yet, each a String or a Rope
+    private static final class Parts {
+        final Object left;
+        final Object right;
+
+        Parts(Object left, Object right) {
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    static boolean isString(Object value) {
+        return value instanceof String || value instanceof Rope;
+    }
+
+    // left + right, both Lox strings (see isString())
+    static Object concat(Object left, Object right) {
+        int leftLength = length(left);
+        int rightLength = length(right);
+        if (leftLength == 0)
+            return right;
+        if (rightLength == 0)
+            return left;
+
+        long length = (long) leftLength + rightLength;
+        if (length > Integer.MAX_VALUE)
+            throw new OutOfMemoryError("String of " + length + " chars is too long.");
+        // anything this short is made of Strings, see above
+        if (length <= FLAT_LIMIT)
+            return (String) left + (String) right;
+        return new Rope(left, right, (int) length);
+    }
+
+    // number of chars in a Lox string, without flattening it
+    static int length(Object string) {
+        if (string instanceof Rope)
+            return ((Rope) string).length;
+        return ((String) string).length();
+    }
+
+    // flatten the rope. a loop instead of recursion, ropes can be very deep
+    @Override
+    public String toString() {
+        Object content = this.content;
+        if (content instanceof String)
+            return (String) content;
+
+        StringBuilder sb = new StringBuilder(length);
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            Object part = pending.pop();
+            if (part instanceof String) {
+                sb.append((String) part);
+                continue;
+            }
+            // read once, another task may flatten it meanwhile
+            Object parts = ((Rope) part).content;
+            if (parts instanceof String) {
+                sb.append((String) parts);
+            } else {
+                // right goes under left, so left comes out first
+                pending.push(((Parts) parts).right);
+                pending.push(((Parts) parts).left);
+            }
+        }
+        String text = sb.toString();
+        // drops the parts, a string grown by + holds on to no earlier version of itself
+        this.content = text;
+        return text;
+    }
+}
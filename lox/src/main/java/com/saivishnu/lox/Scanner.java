@@ -1,6 +1,6 @@
 package com.saivishnu.lox;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,43 +12,154 @@ class Scanner {
     private int start = 0;
     private int current = 0;
     private int line = 1;
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
-    private static final Map<String, TokenType> keywords;
+    private final Source source;
+    // scanning stops here, the end of the source unless only a piece is scanned
+    private final int end;
+    // the source (or piece) ended inside a string literal
+    private boolean endedInString = false;
+    private final TokenBuffer tokens;
+    private final ErrorReporter reporter;
+    private final SymbolTable symbols;
+    // EOF was added, streaming only
+    private boolean scannedAll = false;
+    // tokens scanned at a time when streaming
+    private static final int STREAM_BATCH = 1024;
+    // read-only, fixedLexemes and keyword() are built to agree with it
+    static final Map<String, TokenType> keywords;
     static {
-        keywords = new HashMap<>();
-        keywords.put("and", AND);
-        keywords.put("class", CLASS);
-        keywords.put("else", ELSE);
-        keywords.put("false", FALSE);
-        keywords.put("for", FOR);
-        keywords.put("fun", FUN);
-        keywords.put("if", IF);
-        keywords.put("nil", NIL);
-        keywords.put("or", OR);
-        keywords.put("print", PRINT);
-        keywords.put("return", RETURN);
-        keywords.put("super", SUPER);
-        keywords.put("this", THIS);
-        keywords.put("true", TRUE);
-        keywords.put("var", VAR);
-        keywords.put("while", WHILE);
+        Map<String, TokenType> keywordTypes = new HashMap<>();
+        keywordTypes.put("and", AND);
+        keywordTypes.put("class", CLASS);
+        keywordTypes.put("else", ELSE);
+        keywordTypes.put("false", FALSE);
+        keywordTypes.put("for", FOR);
+        keywordTypes.put("fun", FUN);
+        keywordTypes.put("if", IF);
+        keywordTypes.put("nil", NIL);
+        keywordTypes.put("or", OR);
+        keywordTypes.put("print", PRINT);
+        keywordTypes.put("return", RETURN);
+        keywordTypes.put("spawn", SPAWN);
+        keywordTypes.put("super", SUPER);
+        keywordTypes.put("this", THIS);
+        keywordTypes.put("true", TRUE);
+        keywordTypes.put("var", VAR);
+        keywordTypes.put("while", WHILE);
+        keywords = Collections.unmodifiableMap(keywordTypes);
     }
 
+    // lexemes of the tokens that are always spelled the same, so they don't have to
+    // be cut out of (or decoded from) the source every time
+    private static final String[] fixedLexemes = new String[TokenType.values().length];
+    static {
+        String[] punctuation = { "(", ")", "{", "}", ",", ".", "-", "+", ";", "/", "*",
+                "!", "!=", "=", "==", ">", ">=", "<", "<=" };
+        TokenType[] types = { LEFT_PAREN, RIGHT_PAREN, LEFT_BRACE, RIGHT_BRACE, COMMA, DOT, MINUS, PLUS,
+                SEMICOLON, SLASH, STAR, BANG, BANG_EQUAL, EQUAL, EQUAL_EQUAL, GREATER, GREATER_EQUAL,
+                LESS, LESS_EQUAL };
+        for (int i = 0; i < types.length; i++)
+            fixedLexemes[types[i].ordinal()] = punctuation[i];
+        for (Map.Entry<String, TokenType> keyword : keywords.entrySet())
+            fixedLexemes[keyword.getValue().ordinal()] = keyword.getKey();
+        fixedLexemes[EOF.ordinal()] = "";
+    }
+
+    // errors go straight to stderr
     Scanner(String source) {
+        this(Source.of(source), new ErrorReporter(System.err));
+    }
+
+    Scanner(Source source, ErrorReporter reporter) {
+        this(source, reporter, new SymbolTable());
+    }
+
+    // identifiers are interned into symbols, which may be shared with earlier runs
+    Scanner(Source source, ErrorReporter reporter, SymbolTable symbols) {
+        this(source, reporter, symbols, 1);
+    }
+
+    // a piece of a larger text that starts on the given line
+    Scanner(Source source, ErrorReporter reporter, SymbolTable symbols, int line) {
+        this(source, reporter, symbols, line, 0, source.length());
+    }
+
+    // only the chars from (inclusive) to (exclusive) of source, see ParallelScanner
+    Scanner(Source source, ErrorReporter reporter, SymbolTable symbols, int line, int from, int to) {
+        this.line = line;
+        this.start = from;
+        this.current = from;
+        this.end = to;
         this.source = source;
+        this.reporter = reporter;
+        this.symbols = symbols;
+        this.tokens = new TokenBuffer(source, symbols);
     }
 
-    List<Token> scanTokens() {
+    TokenBuffer scan() {
+        Events.Scan event = new Events.Scan();
+        event.begin();
+        scanToEnd();
+        if (event.shouldCommit()) {
+            event.sourceLength = source.length();
+            event.tokens = tokens.size();
+            event.commit();
+        }
+        return tokens;
+    }
+
+    // scan everything that is left, without a Flight Recorder event
+    TokenBuffer scanToEnd() {
         while (!isAtEnd()) {
             start = current;
             scanToken();
         }
 
-        tokens.add(new Token(EOF, "", null, line));
+        tokens.add(EOF, current, 0, line);
         return tokens;
     }
 
+    // the line scanning ended on
+    int line() {
+        return line;
+    }
+
+    boolean endedInString() {
+        return endedInString;
+    }
+
+    /*
+     * a buffer that is filled as the parser gets to its end instead of all at
+     * once, for streaming. nothing is scanned that the parser doesn't need yet.
+     */
+    TokenBuffer stream() {
+        tokens.streamFrom(this);
+        scanMore();
+        return tokens;
+    }
+
+    // scan the next batch of tokens, the last batch ends with EOF
+    void scanMore() {
+        int target = tokens.size() + STREAM_BATCH;
+        while (!isAtEnd() && tokens.size() < target) {
+            start = current;
+            scanToken();
+        }
+        if (isAtEnd() && !scannedAll) {
+            tokens.add(EOF, current, 0, line);
+            scannedAll = true;
+        }
+    }
+
+    // the tokens as objects, handy for printing them
+    List<Token> scanTokens() {
+        return scan().toList();
+    }
+
+    // lexeme of a token type that is always spelled the same, null for the others
+    static String fixedLexeme(TokenType type) {
+        return fixedLexemes[type.ordinal()];
+    }
+
     private void scanToken() {
         char c = advance();
         switch (c) {
@@ -109,7 +220,7 @@ class Scanner {
                 // while ((peek() != '*' && peekNext() != '/') && !isAtEnd())
                 // advance();
                 // if (isAtEnd())
-                // Lox.error(line, "End of file before end of comment");
+                // reporter.error(line, "End of file before end of comment");
                 // }
                 else
                     addToken(SLASH); // it is a division.
@@ -132,8 +243,11 @@ class Scanner {
                     number();
                 else if (isAlphaNumeric(c))
                     identifier();
-                else
-                    Lox.error(line, "Unexpected token.");
+                else {
+                    // one error for the whole character, however many chars or bytes it is
+                    current = Math.min(source.characterEnd(start), end);
+                    reporter.error(line, "Unexpected token.");
+                }
                 break;
         }
     }
@@ -142,17 +256,87 @@ class Scanner {
         // keep advancing until end of the word / identifier
         while (isAlphaNumeric(peek()))
             advance();
-        // check if it is a keyword or an identifier and add respectively
-        String word = source.substring(start, current);
-        TokenType type = keywords.get(word);
+        // check if it is a keyword or an identifier and add respectively. only
+        // identifiers are interned, keywords never need a name
+        TokenType type = keyword(source, start, current);
         if (type == null)
-            type = IDENTIFIER;
-        // add the type as a token
-        addToken(type); // it is either one of the keywords or IDENTIFIER
+            tokens.add(IDENTIFIER, start, current - start, line, symbols.intern(source, start, current));
+        else
+            addToken(type);
+    }
+
+    /*
+     * the keyword spelled by the chars between start and end, or null. a switch
+     * on the first (and sometimes second) char picks the only keyword it can be,
+     * then the rest is compared in place: no substring, no hashing.
+     */
+    static TokenType keyword(Source source, int start, int end) {
+        int length = end - start;
+        if (length < 2 || length > 6)
+            return null;
+        switch (source.charAt(start)) {
+            case 'a':
+                return rest(source, start, end, 1, "nd", AND);
+            case 'c':
+                return rest(source, start, end, 1, "lass", CLASS);
+            case 'e':
+                return rest(source, start, end, 1, "lse", ELSE);
+            case 'f':
+                switch (source.charAt(start + 1)) {
+                    case 'a':
+                        return rest(source, start, end, 2, "lse", FALSE);
+                    case 'o':
+                        return rest(source, start, end, 2, "r", FOR);
+                    case 'u':
+                        return rest(source, start, end, 2, "n", FUN);
+                }
+                return null;
+            case 'i':
+                return rest(source, start, end, 1, "f", IF);
+            case 'n':
+                return rest(source, start, end, 1, "il", NIL);
+            case 'o':
+                return rest(source, start, end, 1, "r", OR);
+            case 'p':
+                return rest(source, start, end, 1, "rint", PRINT);
+            case 'r':
+                return rest(source, start, end, 1, "eturn", RETURN);
+            case 's':
+                switch (source.charAt(start + 1)) {
+                    case 'p':
+                        return rest(source, start, end, 2, "awn", SPAWN);
+                    case 'u':
+                        return rest(source, start, end, 2, "per", SUPER);
+                }
+                return null;
+            case 't':
+                switch (source.charAt(start + 1)) {
+                    case 'h':
+                        return rest(source, start, end, 2, "is", THIS);
+                    case 'r':
+                        return rest(source, start, end, 2, "ue", TRUE);
+                }
+                return null;
+            case 'v':
+                return rest(source, start, end, 1, "ar", VAR);
+            case 'w':
+                return rest(source, start, end, 1, "hile", WHILE);
+        }
+        return null;
+    }
+
+    // type if the word is the first offset chars already checked followed by rest
+    private static TokenType rest(Source source, int start, int end, int offset, String rest, TokenType type) {
+        if (end - start != offset + rest.length())
+            return null;
+        for (int i = 0; i < rest.length(); i++)
+            if (source.charAt(start + offset + i) != rest.charAt(i))
+                return null;
+        return type;
     }
 
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= end;
     }
 
     private char advance() {
@@ -160,13 +344,9 @@ class Scanner {
         return source.charAt(current++);
     }
 
+    // only the position is kept, the text and value are read back when needed
     private void addToken(TokenType type) {
-        addToken(type, null);
-    }
-
-    private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(type, text, literal, line));
+        tokens.add(type, start, current - start, line);
     }
 
     private boolean match(char expected) {
@@ -189,7 +369,7 @@ class Scanner {
 
     // peek ahead to the 2nd character from current
     private char peekNext() {
-        if (current + 1 > source.length())
+        if (current + 1 >= end)
             return '\0';
         return source.charAt(current + 1);
     }
@@ -216,16 +396,16 @@ class Scanner {
             advance();
         }
         if (isAtEnd()) {
-            Lox.error(line, "String not closed properly");
+            endedInString = true;
+            reporter.error(line, "String not closed properly");
             return;
         }
 
         // advance the closing "
         advance();
 
-        // save value without the leading and trailing quote " "
-        String value = source.substring(start + 1, current - 1);
-        addToken(STRING, value);
+        // the value is the text without the leading and trailing quote " "
+        addToken(STRING);
     }
 
     private void number() {
@@ -241,7 +421,39 @@ class Scanner {
                 advance();
         }
 
-        addToken(NUMBER,
-                Double.parseDouble(source.substring(start, current)));
+        addToken(NUMBER);
+    }
+
+    /*
+     * value of the number between start and end, read straight from the source.
+     * up to 15 digits and 22 decimals, both the digits (as an integer) and the power of
+     * ten are exact doubles, so a single division gives the correctly rounded result,
+     * the same one Double.parseDouble() gives. anything longer goes to parseDouble().
+     */
+    static double parseNumber(Source source, int start, int end) {
+        long digits = 0;
+        int count = 0;
+        int decimals = -1;
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(i);
+            if (c == '.') {
+                decimals = 0;
+                continue;
+            }
+            digits = digits * 10 + (c - '0');
+            count++;
+            if (decimals >= 0)
+                decimals++;
+        }
+
+        if (count > 15 || decimals > 22)
+            return Double.parseDouble(source.text(start, end));
+        if (decimals <= 0)
+            return digits;
+        return digits / POWERS_OF_TEN[decimals];
     }
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
 }
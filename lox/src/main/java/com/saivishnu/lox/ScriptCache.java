@@ -0,0 +1,193 @@
+package com.saivishnu.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The ScriptCache class keeps parsed scripts on disk so running the same
+ * script again skips the scanner and the parser.
+ * Entries are .loxc files named after a SHA-256 of the interpreter version and
+ * the source. Every file is checked when it is loaded (magic, format, version,
+ * key and a CRC32 of the payload); anything that doesn't check out is deleted
+ * and treated as a miss. The directory is kept under a size limit by deleting
+ * the least recently used entries.
+ *
+ * File layout:
+ * magic "LOXC" | format (int) | Lox.VERSION (UTF) | key (32 bytes)
+ * | payload length (int) | payload CRC32 (int) | payload (AstCodec)
+ */
+class ScriptCache {
+    private static final int MAGIC = 0x4C4F5843;
+    // bump when the layout above or AstCodec changes
+    private static final int FORMAT = 2;
+    private static final String EXTENSION = ".loxc";
+
+    private final Path directory;
+    private final long maxBytes;
+
+    ScriptCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    // hash of everything a cached entry depends on
+    byte[] key(Source source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(Lox.VERSION.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            source.digest(digest);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException error) {
+            // every JVM has to ship SHA-256
+            throw new IllegalStateException(error);
+        }
+    }
+
+    // the cached statements for a key, or null if there is no valid entry
+    List<Stmt> load(byte[] key, SymbolTable symbols) {
+        Path path = pathOf(key);
+        if (!Files.isRegularFile(path))
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT || !in.readUTF().equals(Lox.VERSION))
+                throw new IOException("Stale or foreign cache entry.");
+            byte[] storedKey = new byte[key.length];
+            in.readFully(storedKey);
+            if (!Arrays.equals(storedKey, key))
+                throw new IOException("Cache entry has the wrong key.");
+
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 0 || length > Files.size(path))
+                throw new IOException("Bad payload length.");
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            if (checksum != crc(payload))
+                throw new IOException("Cache entry is corrupt.");
+
+            List<Stmt> statements = AstCodec.read(new DataInputStream(new ByteArrayInputStream(payload)), symbols);
+            // used just now, keep it away from eviction
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return statements;
+        } catch (IOException | RuntimeException error) {
+            // a bad entry is only a miss, get rid of it so it is written again
+            deleteQuietly(path);
+            return null;
+        }
+    }
+
+    /*
+     * write an entry, then trim the directory back under its limit. one cache
+     * serves every session of a batch run, a failure goes to the err of the
+     * session that stored the entry, next to that script's other output
+     */
+    void store(byte[] key, List<Stmt> statements, PrintStream err) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(payload)) {
+                AstCodec.write(statements, out);
+            }
+            byte[] bytes = payload.toByteArray();
+
+            Files.createDirectories(directory);
+            // write next to the entry and move it in place, so readers never see half a file
+            Path temp = Files.createTempFile(directory, "entry", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeUTF(Lox.VERSION);
+                out.write(key);
+                out.writeInt(bytes.length);
+                out.writeInt(crc(bytes));
+                out.write(bytes);
+            }
+            Files.move(temp, pathOf(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            evict();
+        } catch (IOException error) {
+            // the cache is only an optimization, running the script matters more
+            err.println("[cache] could not write entry: " + error.getMessage());
+        }
+    }
+
+    // delete the least recently used entries until the directory fits in maxBytes
+    private void evict() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                entries.add(file);
+                total += sizeOf(file);
+            }
+        }
+        if (total <= maxBytes)
+            return;
+
+        entries.sort(Comparator.comparingLong(ScriptCache::lastUsed));
+        for (Path entry : entries) {
+            if (total <= maxBytes)
+                break;
+            long size = sizeOf(entry);
+            deleteQuietly(entry);
+            total -= size;
+        }
+    }
+
+    private Path pathOf(byte[] key) {
+        StringBuilder name = new StringBuilder(key.length * 2 + EXTENSION.length());
+        for (byte b : key)
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return directory.resolve(name.append(EXTENSION).toString());
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    // other processes may be evicting at the same time, a file that is gone is fine
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException error) {
+            return 0;
+        }
+    }
+
+    private static long lastUsed(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException error) {
+            return 0;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException error) {
+            // nothing to do, it will be overwritten or evicted later
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.saivishnu.lox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The Session class takes source code all the way through: scanner, parser,
+ * optimizer (if asked for), resolver and one of the two backends.
+ * Everything a run touches (globals, error flags, output) belongs to the
+ * session, so separate sessions can run at the same time on different threads.
+ * The interactive prompt uses one session for all of its lines.
+ * Print output is buffered (see Options.sink()) and flushed at the end of
+ * every run, close() the session when done with it.
+ * With --stream a file isn't parsed as a whole first: every top level
+ * statement runs as soon as it is parsed, see stream().
+ */
+class Session {
+    final ErrorReporter reporter;
+    private final Options options;
+    private final PrintStream err;
+    private final PrintSink out;
+    // interpreter object
+    private final Interpreter interpreter;
+    // variable resolver, kept between runs like the interpreter's globals
+    private final Resolver resolver;
+    // identifiers of every run, so a name has the same id on every prompt line
+    private final SymbolTable symbols = new SymbolTable();
+    // bytecode virtual machine, used instead of the interpreter with --vm
+    private final VM vm;
+    // runs the tree compiled to closures, used instead of the interpreter with --closure
+    private final ClosureRuntime closures;
+    // what --profile measured, null without it
+    private final Profile profile;
+
+    Session(Options options, OutputStream out, PrintStream err) {
+        this.options = options;
+        this.err = err;
+        this.out = options.sink(out);
+        this.reporter = new ErrorReporter(err);
+        this.resolver = new Resolver(symbols);
+        this.profile = options.profile ? new Profile() : null;
+        // only the interpreter can be profiled, so --profile wins over --vm and --closure
+        if (profile != null)
+            this.interpreter = new ProfilingInterpreter(this.out, reporter, profile);
+        else
+            this.interpreter = new Interpreter(this.out, reporter);
+        this.vm = new VM(this.out, reporter);
+        this.closures = new ClosureRuntime(this.out, reporter);
+    }
+
+    // read the file and run it
+    void runFile(Path path) throws IOException {
+        Source source;
+        if (options.mmap) {
+            // the file has to be UTF-8, it is decoded piece by piece by the scanner
+            source = Source.map(path);
+        } else {
+            byte[] bytes = Files.readAllBytes(path);
+            source = Source.of(new String(bytes, Charset.defaultCharset()));
+        }
+        if (options.stream)
+            stream(source);
+        else
+            run(source, options.cache());
+    }
+
+    // run the source code
+    void run(Source source) {
+        run(source, null);
+    }
+
+    private void run(Source source, ScriptCache cache) {
+        // a cached copy of the script skips the scanner and the parser
+        byte[] cacheKey = null;
+        List<Stmt> statement = null;
+        if (cache != null) {
+            cacheKey = cache.key(source);
+            statement = cache.load(cacheKey, symbols);
+        }
+        if (statement == null) {
+            statement = parse(source);
+            // if there was a syntax error, stop execution
+            if (reporter.hadError)
+                return;
+            if (cache != null)
+                cache.store(cacheKey, statement, err);
+        }
+
+        // fold constants and drop redundant nodes before running anything
+        if (options.optimize) {
+            Optimizer optimizer = new Optimizer();
+            statement = optimizer.optimize(statement);
+            err.println("[optimizer] removed " + optimizer.removed() + " nodes");
+        }
+
+        // give every variable its slot, after the optimizer so no rebuilt node is missed
+        resolver.resolve(statement);
+
+        // either compile to bytecode and run it on the vm, compile to closures or walk the tree
+        if (options.useVm && profile == null)
+            vm.interpret(new Compiler().compile(statement));
+        else if (options.closure && profile == null)
+            closures.interpret(new ClosureCompiler().compile(statement));
+        else
+            interpreter.interpret(statement);
+        out.flush();
+    }
+
+    /*
+     * run the statements of a source as they are parsed: the parser stops at
+     * the end of each top level statement, the backend runs it and only then is
+     * the next one parsed. tokens the parser is done with are dropped and a
+     * statement is garbage once it has run, so memory use doesn't grow with the
+     * length of the script (the script cache needs the whole tree, so it is
+     * skipped). a syntax error stops the run at that statement, what came
+     * before it has run already.
+     */
+    private void stream(Source source) {
+        StatementStream statements = new StatementStream(source);
+        if (options.useVm && profile == null) {
+            vm.interpret(() -> new Iterator<Chunk>() {
+                @Override
+                public boolean hasNext() {
+                    return statements.hasNext();
+                }
+
+                @Override
+                public Chunk next() {
+                    return new Compiler().compile(Collections.singletonList(statements.next()));
+                }
+            });
+        } else if (options.closure && profile == null) {
+            closures.interpret(() -> new Iterator<ClosureCompiler.Exec>() {
+                @Override
+                public boolean hasNext() {
+                    return statements.hasNext();
+                }
+
+                @Override
+                public ClosureCompiler.Exec next() {
+                    return new ClosureCompiler().compile(Collections.singletonList(statements.next()));
+                }
+            });
+        } else {
+            interpreter.interpret(() -> statements);
+        }
+        statements.finish();
+        out.flush();
+    }
+
+    // the top level statements of a source, parsed, optimized and resolved one at a time
+    private class StatementStream implements Iterator<Stmt> {
+        private final TokenBuffer tokens;
+        private final Parser parser;
+        private final Optimizer optimizer = options.optimize ? new Optimizer() : null;
+        private Stmt next = null;
+
+        StatementStream(Source source) {
+            tokens = new Scanner(source, reporter, symbols).stream();
+            parser = new Parser(tokens, reporter);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !reporter.hadError && !parser.isAtEnd()) {
+                // the statements before this one are done with their tokens
+                tokens.discard(parser.position());
+                Stmt statement = parser.nextDeclaration();
+                if (reporter.hadError)
+                    break;
+                if (optimizer != null)
+                    statement = optimizer.optimize(Collections.singletonList(statement)).get(0);
+                resolver.resolve(Collections.singletonList(statement));
+                next = statement;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Stmt next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Stmt statement = next;
+            next = null;
+            return statement;
+        }
+
+        // after a syntax error, parse the rest to report its errors too
+        void finish() {
+            while (reporter.hadError && !parser.isAtEnd()) {
+                tokens.discard(parser.position());
+                parser.nextDeclaration();
+            }
+            if (optimizer != null)
+                err.println("[optimizer] removed " + optimizer.removed() + " nodes");
+        }
+    }
+
+    // write out what is left and stop the sink's threads, then report the profile
+    void close() {
+        out.close();
+        if (profile == null)
+            return;
+        profile.report(err);
+        if (options.profileStacks != null) {
+            try {
+                profile.writeCollapsed(options.profileStacks);
+            } catch (IOException error) {
+                err.println("[profile] could not write " + options.profileStacks + ": " + error.getMessage());
+            }
+        }
+    }
+
+    // scan and parse the source code
+    private List<Stmt> parse(Source source) {
+        TokenBuffer tokens = options.parallelScan ? new ParallelScanner(source, reporter, symbols).scan()
+                : new Scanner(source, reporter, symbols).scan();
+
+        // two sample code to either print all the token or the syntax tree
+        // METHOD 1:
+        // print the tokens
+        // for (Token token : tokens.toList())
+        // System.out.println(token);
+
+        // METHOD 2:
+        // print the expression using AstPrinter
+        // System.out.println(new AstPrinter().print(expression));
+
+        // parse the tokens
+        if (options.parallelParse)
+            return new ParallelParser(tokens, reporter).parse();
+        Parser parser = new Parser(tokens, reporter);
+        return parser.parse();
+    }
+}
@@ -0,0 +1,134 @@
+package com.saivishnu.lox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+/**
+ * The Source class is what the Scanner reads from.
+ * It is either a String (the prompt, small files) or a file mapped into memory
+ * and read as UTF-8 bytes, so large scripts are never copied onto the heap as
+ * a whole. Text is only decoded for the ranges the Scanner asks for.
+ */
+abstract class Source {
+
+    // number of positions (chars or bytes) in the source
+    abstract int length();
+
+    /*
+     * character at a position. for byte sources this is the raw byte, which is
+     * fine for the Scanner: everything outside of string literals and comments
+     * is ASCII, and '"' and '\n' never show up inside a multi-byte UTF-8 character.
+     */
+    abstract char charAt(int index);
+
+    /*
+     * position right after the character that starts at index. a character
+     * outside of ASCII is more than one position (a surrogate pair, a UTF-8
+     * sequence), the Scanner skips it as a whole to report it only once.
+     */
+    abstract int characterEnd(int index);
+
+    // decoded text between start (inclusive) and end (exclusive)
+    abstract String text(int start, int end);
+
+    // feed the whole source (as UTF-8) to a digest, used as the cache key
+    abstract void digest(MessageDigest digest);
+
+    static Source of(String text) {
+        return new Chars(text);
+    }
+
+    // map a UTF-8 file into memory instead of reading it
+    static Source map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException(path + " is too large to map (" + size + " bytes).");
+            // the mapping stays valid after the channel is closed
+            return new Bytes(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    static class Chars extends Source {
+        private final String text;
+
+        Chars(String text) {
+            this.text = text;
+        }
+
+        @Override
+        int length() {
+            return text.length();
+        }
+
+        @Override
+        char charAt(int index) {
+            return text.charAt(index);
+        }
+
+        @Override
+        int characterEnd(int index) {
+            if (Character.isHighSurrogate(text.charAt(index)) && index + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(index + 1)))
+                return index + 2;
+            return index + 1;
+        }
+
+        @Override
+        String text(int start, int end) {
+            return text.substring(start, end);
+        }
+
+        @Override
+        void digest(MessageDigest digest) {
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    static class Bytes extends Source {
+        private final ByteBuffer bytes;
+
+        Bytes(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        int length() {
+            return bytes.limit();
+        }
+
+        @Override
+        char charAt(int index) {
+            return (char) (bytes.get(index) & 0xFF);
+        }
+
+        @Override
+        int characterEnd(int index) {
+            // continuation bytes are 10xxxxxx
+            int end = index + 1;
+            while (end < bytes.limit() && (bytes.get(end) & 0xC0) == 0x80)
+                end++;
+            return end;
+        }
+
+        @Override
+        String text(int start, int end) {
+            byte[] range = new byte[end - start];
+            // absolute bulk get isn't there before Java 13, go through a duplicate
+            ByteBuffer view = bytes.duplicate();
+            view.position(start);
+            view.get(range);
+            return new String(range, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        void digest(MessageDigest digest) {
+            digest.update(bytes.duplicate());
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package com.saivishnu.lox;
 
+import java.util.List;
+
 abstract class Stmt {
 	interface Visitor<R> {
 		R visitExpressionStmt(Expression stmt);
 
 		R visitPrintStmt(Print stmt);
 
+		R visitSpawnStmt(Spawn stmt);
+
 		R visitVarStmt(Var stmt);
 	}
 
@@ -35,6 +39,21 @@ abstract class Stmt {
 		final Expr expression;
 	}
 
+	static class Spawn extends Stmt {
+		Spawn(Token keyword, Stmt body) {
+			this.keyword = keyword;
+			this.body = body;
+		}
+
+		@Override
+		<R> R accept(Visitor<R> visitor) {
+			return visitor.visitSpawnStmt(this);
+		}
+
+		final Token keyword;
+		final Stmt body;
+	}
+
 	static class Var extends Stmt {
 		Var(Token name, Expr initializer) {
 			this.name = name;
@@ -48,6 +67,7 @@ abstract class Stmt {
 
 		final Token name;
 		final Expr initializer;
+		int slot;
 	}
 
 	abstract <R> R accept(Visitor<R> visitor);
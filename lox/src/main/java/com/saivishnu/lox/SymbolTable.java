@@ -0,0 +1,119 @@
+package com.saivishnu.lox;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The SymbolTable class gives every distinct identifier of a program a dense
+ * integer id (0, 1, 2, ...) and keeps one String per identifier.
+ * The Scanner interns identifiers straight from the source, the name is
+ * hashed and compared in place and only turned into a String the first time
+ * it is seen. Tokens carry the id, so the Resolver works on ints instead of
+ * hashing names.
+ * String literals are deduplicated too, so a literal that shows up many times
+ * is kept on the heap once (as long as it shows up often enough to stay in
+ * the table).
+ * A session keeps its table between runs, so ids stay the same from one
+ * prompt line to the next.
+ */
+class SymbolTable {
+    // open addressing: id + 1 of the symbol in each slot, 0 for an empty slot
+    private int[] slots = new int[64];
+    private String[] names = new String[32];
+    private int[] hashes = new int[32];
+    private int count = 0;
+
+    // the literals seen lately, cleared when full so a long stream of distinct
+    // literals doesn't pile up (see Session's streaming). ParallelParser makes
+    // literals on several threads at once
+    private static final int MAX_STRINGS = 4096;
+    private final Map<String, String> strings = new ConcurrentHashMap<>();
+
+    // id of the identifier between start (inclusive) and end (exclusive)
+    int intern(Source source, int start, int end) {
+        // same hash as String.hashCode(), so intern(String) finds it too
+        int hash = 0;
+        for (int i = start; i < end; i++)
+            hash = 31 * hash + source.charAt(i);
+
+        int mask = slots.length - 1;
+        for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0)
+                return add(source.text(start, end), hash, slot);
+            if (hashes[id] == hash && matches(names[id], source, start, end))
+                return id;
+        }
+    }
+
+    int intern(String name) {
+        int hash = name.hashCode();
+        int mask = slots.length - 1;
+        for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0)
+                return add(name, hash, slot);
+            if (hashes[id] == hash && names[id].equals(name))
+                return id;
+        }
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    int size() {
+        return count;
+    }
+
+    // the one copy of a string literal
+    String string(String literal) {
+        if (strings.size() >= MAX_STRINGS)
+            strings.clear();
+        String existing = strings.putIfAbsent(literal, literal);
+        return existing != null ? existing : literal;
+    }
+
+    private int add(String name, int hash, int slot) {
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+            hashes = Arrays.copyOf(hashes, count * 2);
+        }
+        int id = count++;
+        names[id] = name;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+
+        // keep the table at most half full
+        if (count * 2 > slots.length)
+            rehash();
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int id = 0; id < count; id++) {
+            int slot = spread(hashes[id]) & mask;
+            while (slots[slot] != 0)
+                slot = (slot + 1) & mask;
+            slots[slot] = id + 1;
+        }
+    }
+
+    // identifiers are ASCII, so a char of the source is a char of the name
+    private static boolean matches(String name, Source source, int start, int end) {
+        if (name.length() != end - start)
+            return false;
+        for (int i = 0; i < name.length(); i++)
+            if (name.charAt(i) != source.charAt(start + i))
+                return false;
+        return true;
+    }
+
+    // mix the high bits in, names often differ only in the last char
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,70 @@
+package com.saivishnu.lox;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The Tasks class starts the tasks made by spawn statements and waits for them.
+ * Every task runs on a thread of its own: a virtual thread when the JVM has
+ * them (Java 21 and later), so a script can have tens of thousands of tasks
+ * waiting on channels. The build targets Java 11 (options.release in the
+ * conventions plugin), so older JVMs fall back to (daemon) platform threads,
+ * one OS thread per task. That is fine for a few thousand tasks, see README.
+ * A run owns one Tasks, shared by every task it spawns, directly or not.
+ */
+class Tasks {
+    // Thread.startVirtualThread(Runnable), looked up because the build targets Java 11
+    private static final MethodHandle START_VIRTUAL = startVirtual();
+
+    private final Queue<Thread> threads = new ConcurrentLinkedQueue<>();
+
+    void spawn(Runnable task) {
+        threads.add(start(task));
+    }
+
+    /*
+     * wait for every task, including the ones spawned while waiting. a task
+     * adds the tasks it spawns before it ends, so once the queue is drained
+     * nothing is left running.
+     */
+    void await() {
+        Thread thread;
+        while ((thread = threads.poll()) != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException error) {
+                // give up on the rest, but let the caller know
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static Thread start(Runnable task) {
+        if (START_VIRTUAL != null) {
+            try {
+                return (Thread) START_VIRTUAL.invokeExact(task);
+            } catch (UnsupportedOperationException error) {
+                // preview feature that isn't enabled (Java 19, 20)
+            } catch (Throwable error) {
+                throw new IllegalStateException(error);
+            }
+        }
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static MethodHandle startVirtual() {
+        try {
+            return MethodHandles.publicLookup().findStatic(Thread.class, "startVirtualThread",
+                    MethodType.methodType(Thread.class, Runnable.class));
+        } catch (ReflectiveOperationException error) {
+            return null;
+        }
+    }
+}
@@ -5,12 +5,19 @@ public class Token {
     final String lexeme;
     final Object literal;
     final int line;
+    // id of the name in the SymbolTable, -1 if this isn't an identifier
+    final int symbol;
 
     Token(TokenType type, String lexeme, Object literal, int line) {
+        this(type, lexeme, literal, line, -1);
+    }
+
+    Token(TokenType type, String lexeme, Object literal, int line, int symbol) {
         this.type = type;
         this.lexeme = lexeme;
         this.literal = literal;
         this.line = line;
+        this.symbol = symbol;
     }
 
     public String toString() {
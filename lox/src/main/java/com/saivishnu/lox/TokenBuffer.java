@@ -0,0 +1,176 @@
+package com.saivishnu.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The TokenBuffer class holds the tokens of a source as parallel int arrays
+ * (type, start offset, length, line) instead of one Token object per lexeme.
+ * Lexemes and literal values are not stored, they are read back from the
+ * source when asked for. Token objects are only made for the tokens that end
+ * up in the syntax tree or in an error message.
+ * Identifiers also keep their SymbolTable id, their lexeme is the interned name
+ * instead of a new substring.
+ * When streaming (see Scanner.stream()) the buffer only holds a window of the
+ * tokens: the scanner adds more when the parser gets to the end, and the
+ * tokens the parser is done with are dropped. Indexes keep counting from the
+ * first token of the source either way.
+ */
+class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final Source source;
+    private final SymbolTable symbols;
+    private int[] types = new int[256];
+    private int[] starts = new int[256];
+    private int[] lengths = new int[256];
+    private int[] lines = new int[256];
+    private int[] ids = new int[256];
+    private int count = 0;
+    // index of the first token still here, more than 0 only when streaming
+    private int base = 0;
+    // scans more of the source on demand, null when everything is scanned up front
+    private Scanner scanner = null;
+
+    TokenBuffer(Source source, SymbolTable symbols) {
+        this.source = source;
+        this.symbols = symbols;
+    }
+
+    void add(TokenType type, int start, int length, int line) {
+        add(type, start, length, line, -1);
+    }
+
+    // a token with a symbol id, for identifiers
+    void add(TokenType type, int start, int length, int line, int symbol) {
+        if (count == types.length) {
+            int capacity = count * 2;
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        types[count] = type.ordinal();
+        starts[count] = start;
+        lengths[count] = length;
+        lines[count] = line;
+        ids[count] = symbol;
+        count++;
+    }
+
+    // one past the index of the last token scanned so far
+    int size() {
+        return base + count;
+    }
+
+    void streamFrom(Scanner scanner) {
+        this.scanner = scanner;
+    }
+
+    // scan more tokens, nothing happens if everything was scanned already
+    void more() {
+        if (scanner != null)
+            scanner.scanMore();
+    }
+
+    /*
+     * add the tokens of a piece scanned on its own (ParallelScanner), but not
+     * its EOF. its lines are counted from 1 and its symbols are ids in a table
+     * of its own: lines are moved down by lineOffset, symbol ids mapped through
+     * symbolMap.
+     */
+    void append(TokenBuffer piece, int lineOffset, int[] symbolMap) {
+        int added = piece.count - 1;
+        if (count + added > types.length) {
+            int capacity = Math.max(count + added, count * 2);
+            types = Arrays.copyOf(types, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+        }
+        System.arraycopy(piece.types, 0, types, count, added);
+        System.arraycopy(piece.starts, 0, starts, count, added);
+        System.arraycopy(piece.lengths, 0, lengths, count, added);
+        for (int i = 0; i < added; i++) {
+            lines[count + i] = piece.lines[i] + lineOffset;
+            int symbol = piece.ids[i];
+            ids[count + i] = symbol < 0 ? symbol : symbolMap[symbol];
+        }
+        count += added;
+    }
+
+    // drop the tokens before index, they will not be asked for again
+    void discard(int index) {
+        int dropped = index - base;
+        if (dropped <= 0)
+            return;
+        count -= dropped;
+        System.arraycopy(types, dropped, types, 0, count);
+        System.arraycopy(starts, dropped, starts, 0, count);
+        System.arraycopy(lengths, dropped, lengths, 0, count);
+        System.arraycopy(lines, dropped, lines, 0, count);
+        System.arraycopy(ids, dropped, ids, 0, count);
+        base = index;
+    }
+
+    TokenType type(int index) {
+        return TYPES[types[index - base]];
+    }
+
+    int line(int index) {
+        return lines[index - base];
+    }
+
+    int start(int index) {
+        return starts[index - base];
+    }
+
+    int length(int index) {
+        return lengths[index - base];
+    }
+
+    int symbol(int index) {
+        return ids[index - base];
+    }
+
+    // the text of the token, shared for tokens that are always spelled the same
+    String lexeme(int index) {
+        String fixed = Scanner.fixedLexeme(type(index));
+        if (fixed != null)
+            return fixed;
+        if (ids[index - base] >= 0)
+            return symbols.name(ids[index - base]);
+        return source.text(starts[index - base], starts[index - base] + lengths[index - base]);
+    }
+
+    // the value of a NUMBER or STRING token, null for everything else
+    Object literal(int index) {
+        int start = starts[index - base];
+        int end = start + lengths[index - base];
+        switch (type(index)) {
+            case NUMBER:
+                return Scanner.parseNumber(source, start, end);
+            case STRING:
+                // without the quotes, and only one copy of each literal
+                return symbols.string(source.text(start + 1, end - 1));
+            default:
+                return null;
+        }
+    }
+
+    // a real Token, for the syntax tree and error messages
+    Token token(int index) {
+        return new Token(type(index), lexeme(index), literal(index), lines[index - base], ids[index - base]);
+    }
+
+    // every token as an object, for debugging
+    List<Token> toList() {
+        List<Token> tokens = new ArrayList<>(count);
+        for (int i = base; i < base + count; i++)
+            tokens.add(token(i));
+        return tokens;
+    }
+}
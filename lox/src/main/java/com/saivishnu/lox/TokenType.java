@@ -14,7 +14,7 @@ enum TokenType {
 
     // KEYWORDS
     AND, CLASS, ELSE, FALSE, FUN, FOR, IF, NIL, OR, PRINT,
-    RETURN, SUPER, THIS, TRUE, VAR, WHILE,
+    RETURN, SPAWN, SUPER, THIS, TRUE, VAR, WHILE,
 
     EOF
 }
\ No newline at end of file
@@ -0,0 +1,248 @@
+package com.saivishnu.lox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The VM class runs the bytecode produced by the Compiler.
+ * It is a stack machine: instructions pop their operands from the operand
+ * stack and push their result back onto it.
+ * Runtime semantics (truthiness, equality, error messages, printing) are shared
+ * with the Interpreter so both backends give the same output.
+ */
+class VM {
+    // where print goes
+    private final PrintSink out;
+    private final ErrorReporter reporter;
+
+    // global variables by slot, kept between runs like the Interpreter's environment
+    private final Environment globals;
+    // tasks started by spawn, shared with the VMs that run them
+    private final Tasks tasks;
+
+    // prints to stdout, errors go to stderr
+    VM() {
+        this(PrintSink.of(System.out), new ErrorReporter(System.err));
+    }
+
+    VM(PrintSink out, ErrorReporter reporter) {
+        this(new Environment(), out, reporter, new Tasks());
+        Natives.define(globals);
+    }
+
+    // a VM for a spawned task
+    private VM(Environment globals, PrintSink out, ErrorReporter reporter, Tasks tasks) {
+        this.globals = globals;
+        this.out = out;
+        this.reporter = reporter;
+        this.tasks = tasks;
+    }
+
+    void interpret(Chunk chunk) {
+        interpret(Collections.singletonList(chunk));
+    }
+
+    // run chunks one after the other, like one chunk with all of their code
+    void interpret(Iterable<Chunk> chunks) {
+        Events.Execute event = new Events.Execute();
+        event.begin();
+        int codeSize = 0;
+        try {
+            for (Chunk chunk : chunks) {
+                codeSize += chunk.count;
+                run(chunk);
+            }
+        } catch (RuntimeError error) {
+            // what was printed before the error shows up before it
+            out.flush();
+            reporter.runtimeError(error);
+        }
+        // the run isn't over until every task it spawned is
+        tasks.await();
+        if (event.shouldCommit()) {
+            event.backend = "vm";
+            event.codeSize = codeSize;
+            event.commit();
+        }
+    }
+
+    // body of a spawned task, its errors end only the task
+    private void runTask(Chunk chunk) {
+        try {
+            run(chunk);
+        } catch (RuntimeError error) {
+            out.flush();
+            reporter.runtimeError(error);
+        }
+    }
+
+    private void run(Chunk chunk) {
+        // local copies so the loop only touches registers and arrays
+        final byte[] code = chunk.code;
+        final Object[] constants = chunk.constants();
+        final Object[] stack = new Object[chunk.maxStack];
+        int sp = 0;
+        int ip = 0;
+
+        for (;;) {
+            byte instruction = code[ip++];
+            switch (instruction) {
+                case OpCode.CONSTANT:
+                    stack[sp++] = constants[((code[ip] & 0xFF) << 8) | (code[ip + 1] & 0xFF)];
+                    ip += 2;
+                    break;
+                case OpCode.CONSTANT_LONG:
+                    stack[sp++] = constants[((code[ip] & 0xFF) << 16) | ((code[ip + 1] & 0xFF) << 8)
+                            | (code[ip + 2] & 0xFF)];
+                    ip += 3;
+                    break;
+                case OpCode.NIL:
+                    stack[sp++] = null;
+                    break;
+                case OpCode.TRUE:
+                    stack[sp++] = true;
+                    break;
+                case OpCode.FALSE:
+                    stack[sp++] = false;
+                    break;
+                case OpCode.POP:
+                    stack[--sp] = null;
+                    break;
+                case OpCode.DEFINE_GLOBAL: {
+                    int slot = ((code[ip] & 0xFF) << 16) | ((code[ip + 1] & 0xFF) << 8) | (code[ip + 2] & 0xFF);
+                    ip += 3;
+                    globals.define(slot, stack[--sp]);
+                    stack[sp] = null;
+                    break;
+                }
+                case OpCode.GET_GLOBAL: {
+                    int slot = ((code[ip] & 0xFF) << 16) | ((code[ip + 1] & 0xFF) << 8) | (code[ip + 2] & 0xFF);
+                    ip += 3;
+                    stack[sp++] = globals.get(0, slot, chunk.tokens[ip - 4]);
+                    break;
+                }
+                case OpCode.EQUAL: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = Interpreter.isEqual(stack[sp - 1], right);
+                    stack[sp] = null;
+                    break;
+                }
+                case OpCode.NOT_EQUAL: {
+                    Object right = stack[--sp];
+                    stack[sp - 1] = !Interpreter.isEqual(stack[sp - 1], right);
+                    stack[sp] = null;
+                    break;
+                }
+                case OpCode.GREATER: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    Interpreter.checkNumberOperands(chunk.tokens[ip - 1], left, right);
+                    stack[sp - 1] = (double) left > (double) right;
+                    stack[sp] = null;
+                    break;
+                }
+                case OpCode.GREATER_EQUAL: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    Interpreter.checkNumberOperands(chunk.tokens[ip - 1], left, right);
+                    stack[sp - 1] = (double) left >= (double) right;
+                    stack[sp] = null;
+                    break;
+                }
+                case OpCode.LESS: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    Interpreter.checkNumberOperands(chunk.tokens[ip - 1], left, right);
+                    stack[sp - 1] = (double) left < (double) right;
+                    stack[sp] = null;
+                    break;
+                }
+                case OpCode.LESS_EQUAL: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    Interpreter.checkNumberOperands(chunk.tokens[ip - 1], left, right);
+                    stack[sp - 1] = (double) left <= (double) right;
+                    stack[sp] = null;
+                    break;
+                }
+                case OpCode.ADD: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    if (left instanceof Double && right instanceof Double)
+                        stack[sp - 1] = (double) left + (double) right;
+                    else if (Rope.isString(left) && Rope.isString(right))
+                        stack[sp - 1] = Rope.concat(left, right);
+                    else
+                        throw new RuntimeError(chunk.tokens[ip - 1], "Operands must be 2 numbers or 2 strings.");
+                    stack[sp] = null;
+                    break;
+                }
+                case OpCode.SUBTRACT: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    Interpreter.checkNumberOperands(chunk.tokens[ip - 1], left, right);
+                    stack[sp - 1] = (double) left - (double) right;
+                    stack[sp] = null;
+                    break;
+                }
+                case OpCode.MULTIPLY: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    Interpreter.checkNumberOperands(chunk.tokens[ip - 1], left, right);
+                    stack[sp - 1] = (double) left * (double) right;
+                    stack[sp] = null;
+                    break;
+                }
+                case OpCode.DIVIDE: {
+                    Object right = stack[--sp];
+                    Object left = stack[sp - 1];
+                    Interpreter.checkNumberOperands(chunk.tokens[ip - 1], left, right);
+                    stack[sp - 1] = (double) left / (double) right;
+                    stack[sp] = null;
+                    break;
+                }
+                case OpCode.NOT:
+                    stack[sp - 1] = !Interpreter.isTruthy(stack[sp - 1]);
+                    break;
+                case OpCode.NEGATE:
+                    Interpreter.checkNumberOperand(chunk.tokens[ip - 1], stack[sp - 1]);
+                    stack[sp - 1] = -(double) stack[sp - 1];
+                    break;
+                case OpCode.PRINT: {
+                    Object value = stack[--sp];
+                    if (value instanceof Double)
+                        out.println((double) value);
+                    else
+                        out.println(Interpreter.stringify(value));
+                    stack[sp] = null;
+                    break;
+                }
+                case OpCode.CALL: {
+                    int argCount = code[ip++] & 0xFF;
+                    List<Object> arguments = new ArrayList<>(argCount);
+                    for (int i = sp - argCount; i < sp; i++) {
+                        arguments.add(stack[i]);
+                        stack[i] = null;
+                    }
+                    sp -= argCount;
+                    stack[sp - 1] = Interpreter.call(chunk.tokens[ip - 2], stack[sp - 1], arguments);
+                    break;
+                }
+                case OpCode.SPAWN: {
+                    Chunk task = (Chunk) constants[((code[ip] & 0xFF) << 16) | ((code[ip + 1] & 0xFF) << 8)
+                            | (code[ip + 2] & 0xFF)];
+                    ip += 3;
+                    // same as the Interpreter: a copy of the globals, taken on this thread
+                    VM vm = new VM(globals.copy(), out, reporter, tasks);
+                    tasks.spawn(() -> vm.runTask(task));
+                    break;
+                }
+                case OpCode.RETURN:
+                    return;
+                default:
+                    throw new IllegalStateException("Unknown opcode " + instruction + ".");
+            }
+        }
+    }
+}
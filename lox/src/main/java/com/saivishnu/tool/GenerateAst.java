@@ -15,18 +15,23 @@ public class GenerateAst {
         String outputDir = args[0];
         // description of each type and its fields
         List<String> description = Arrays.asList(
-                "Binary : Expr left, Token operator, Expr right",
+                // fields after ';' aren't part of the syntax, they are mutable and filled in later
+                // links: Chains.of() a site at the top of a long chain, set by the Resolver
+                "Binary : Expr left, Token operator, Expr right ; BinaryNode node, Binary[] links",
+                "Call : Expr callee, Token paren, List<Expr> arguments",
                 "Grouping : Expr expression",
                 "Literal: Object value",
                 "Unary : Token operator, Expr right",
-                "Variable : Token name");
+                // resolved by the Resolver: how many environments up and which slot in it
+                "Variable : Token name ; int depth, int slot");
         // pass this description to the function to create the Expr class
         defineAst(outputDir, "Expr", description);
         // generate statement and expression class
         defineAst(outputDir, "Stmt", Arrays.asList(
                 "Expression : Expr expression",
                 "Print : Expr expression",
-                "Var : Token name, Expr initializer"));
+                "Spawn : Token keyword, Stmt body",
+                "Var : Token name, Expr initializer ; int slot"));
     }
 
     private static void defineAst(String outputDir, String baseName, List<String> types) throws IOException {
@@ -35,19 +40,17 @@ public class GenerateAst {
 
         // start of file
         writer.println("package com.saivishnu.lox;\n");
-        /**
-         * Haven't used it until now but the book has it.
-         * So, I will comment it for now
-         * writer.println("import java.util.List;\n");
-         */
+        writer.println("import java.util.List;\n");
         writer.println("abstract class " + baseName + " {");
 
         defineVisitor(writer, baseName, types);
 
         for (String type : types) {
             String className = type.split(":")[0].trim();
-            String fields = type.split(":")[1].trim();
-            defineType(writer, baseName, className, fields);
+            String[] fieldLists = type.split(":")[1].split(";");
+            String fields = fieldLists[0].trim();
+            String mutableFields = fieldLists.length > 1 ? fieldLists[1].trim() : null;
+            defineType(writer, baseName, className, fields, mutableFields);
         }
 
         writer.println("\n\tabstract <R> R accept(Visitor<R> visitor);");
@@ -69,7 +72,8 @@ public class GenerateAst {
         writer.println("\t}");
     }
 
-    private static void defineType(PrintWriter writer, String baseName, String className, String fieldList) {
+    private static void defineType(PrintWriter writer, String baseName, String className, String fieldList,
+            String mutableFieldList) {
         // create class
         writer.println("\tstatic class " + className + " extends " + baseName + " {");
 
@@ -91,6 +95,10 @@ public class GenerateAst {
         // create fields
         for (String field : fields)
             writer.println("\t\tfinal " + field + ";");
+        // mutable fields are not in the constructor, they start out as the default value
+        if (mutableFieldList != null)
+            for (String field : mutableFieldList.split(", "))
+                writer.println("\t\t" + field + ";");
 
         // close/end class
         writer.println("\t}");
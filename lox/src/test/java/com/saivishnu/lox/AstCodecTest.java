@@ -0,0 +1,189 @@
+package com.saivishnu.lox;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AstCodecTest {
+
+    // every kind of node, tokens on several lines and a chain long enough to be walked in a loop
+    static final String SOURCE = "var a = 1;\n"
+            + "var b;\n"
+            + "var s = \"text \u00e9 \u2713\" + \"\";\n"
+            + "print a + 2 * (3 - -a) / 4 == 5 != !true;\n"
+            + "print nil;\n"
+            + "print false;\n"
+            + "print 1 + 2 + 3 + 4 + 5 + 6 + 7 + 8 + 9 + 10 + 11 + a;\n"
+            + "var c = channel(\n"
+            + "    1);\n"
+            + "spawn spawn send(c, s);\n"
+            + "receive(c);\n"
+            + "print \"a\" + \"a\" + \"a\";\n"
+            + "print a >= 1 == 2 < 3;\n"
+            + "print a <= 0.5 != a > 2;\n";
+
+    static List<Stmt> parse(String source, SymbolTable symbols) {
+        ErrorReporter reporter = new ErrorReporter(new PrintStream(new ByteArrayOutputStream(), true));
+        List<Stmt> statements = new Parser(new Scanner(Source.of(source), reporter, symbols).scan(), reporter).parse();
+        assertFalse(reporter.hadError);
+        return statements;
+    }
+
+    static byte[] write(List<Stmt> statements) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            AstCodec.write(statements, out);
+        }
+        return bytes.toByteArray();
+    }
+
+    static List<Stmt> read(byte[] bytes, SymbolTable symbols) throws IOException {
+        return AstCodec.read(new DataInputStream(new ByteArrayInputStream(bytes)), symbols);
+    }
+
+    /*
+     * every node with the type, lexeme and line of its tokens, and the name
+     * behind each symbol. a statement with a syntax error is null
+     */
+    static String dump(List<Stmt> statements, SymbolTable symbols) {
+        Dump dump = new Dump(symbols);
+        StringBuilder sb = new StringBuilder();
+        for (Stmt statement : statements)
+            sb.append(statement == null ? "null" : statement.accept(dump)).append('\n');
+        return sb.toString();
+    }
+
+    @Test
+    void roundTripKeepsEveryNode() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        List<Stmt> statements = parse(SOURCE, symbols);
+
+        // a fresh table, like a new process reading the cache
+        SymbolTable readSymbols = new SymbolTable();
+        List<Stmt> decoded = read(write(statements), readSymbols);
+        assertEquals(dump(statements, symbols), dump(decoded, readSymbols));
+        // written again it comes out byte for byte the same
+        assertArrayEquals(write(statements), write(decoded));
+    }
+
+    @Test
+    void decodedTreeRunsTheSame() throws IOException {
+        String source = SOURCE + "print a;\nprint -s;\n";
+        SymbolTable symbols = new SymbolTable();
+        List<Stmt> decoded = read(write(parse(source, symbols)), symbols);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        ErrorReporter reporter = new ErrorReporter(new PrintStream(err, true));
+        new Resolver(symbols).resolve(decoded);
+        PrintSink sink = PrintSink.of(new PrintStream(out, true));
+        new Interpreter(sink, reporter).interpret(decoded);
+        sink.flush();
+
+        SessionRun expected = SessionRun.of(new String[0], source);
+        assertEquals(expected.out, out.toString());
+        assertEquals(expected.err, err.toString());
+        assertTrue(err.toString().contains("[line 16]"), err.toString());
+    }
+
+    // cut off anywhere, reading fails instead of returning part of a tree
+    @Test
+    void truncatedInputFails() throws IOException {
+        byte[] bytes = write(parse(SOURCE, new SymbolTable()));
+        for (int length = 0; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows(IOException.class, () -> read(truncated, new SymbolTable()), "length " + length);
+        }
+    }
+
+    private static class Dump implements Expr.Visitor<String>, Stmt.Visitor<String> {
+        private final SymbolTable symbols;
+
+        Dump(SymbolTable symbols) {
+            this.symbols = symbols;
+        }
+
+        private String token(Token token) {
+            String text = token.type + " " + token.lexeme + " @" + token.line;
+            if (token.type == TokenType.IDENTIFIER)
+                text += " #" + symbols.name(token.symbol);
+            return text;
+        }
+
+        private String node(String name, Object... parts) {
+            StringBuilder sb = new StringBuilder("(").append(name);
+            for (Object part : parts) {
+                sb.append(' ');
+                if (part instanceof Expr)
+                    sb.append(((Expr) part).accept(this));
+                else if (part instanceof Stmt)
+                    sb.append(((Stmt) part).accept(this));
+                else if (part instanceof Token)
+                    sb.append(token((Token) part));
+                else
+                    sb.append(part);
+            }
+            return sb.append(')').toString();
+        }
+
+        @Override
+        public String visitExpressionStmt(Stmt.Expression stmt) {
+            return node("expression", stmt.expression);
+        }
+
+        @Override
+        public String visitPrintStmt(Stmt.Print stmt) {
+            return node("print", stmt.expression);
+        }
+
+        @Override
+        public String visitSpawnStmt(Stmt.Spawn stmt) {
+            return node("spawn", stmt.keyword, stmt.body);
+        }
+
+        @Override
+        public String visitVarStmt(Stmt.Var stmt) {
+            return node("var", stmt.name, stmt.initializer == null ? "none" : stmt.initializer);
+        }
+
+        @Override
+        public String visitBinaryExpr(Expr.Binary expr) {
+            return node("binary", expr.operator, expr.left, expr.right);
+        }
+
+        @Override
+        public String visitCallExpr(Expr.Call expr) {
+            return node("call", expr.paren, expr.callee, expr.arguments.size(), node("arguments", expr.arguments.toArray()));
+        }
+
+        @Override
+        public String visitGroupingExpr(Expr.Grouping expr) {
+            return node("group", expr.expression);
+        }
+
+        @Override
+        public String visitLiteralExpr(Expr.Literal expr) {
+            Object value = expr.value;
+            return node("literal", value == null ? "nil" : value.getClass().getSimpleName() + " " + value);
+        }
+
+        @Override
+        public String visitUnaryExpr(Expr.Unary expr) {
+            return node("unary", expr.operator, expr.right);
+        }
+
+        @Override
+        public String visitVariableExpr(Expr.Variable expr) {
+            return node("variable", expr.name);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.saivishnu.lox;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * the tree walker, the VM and the closures run the same scripts and have to
+ * print the same things, errors and exit code included.
+ */
+class BackendParityTest {
+
+    private static final String[][] BACKENDS = { {}, { "--vm" }, { "--closure" } };
+
+    /*
+     * what the scripts printed (stdout, then stderr) and the exit code. they run
+     * one after the other in one session, like lines at the prompt
+     */
+    private static String run(String[] flags, String... scripts) {
+        SessionRun run = SessionRun.of(flags, scripts);
+        return run + "exit " + run.exitCode;
+    }
+
+    // every backend prints expected
+    private static void assertParity(String expected, String... scripts) {
+        for (String[] flags : BACKENDS)
+            assertEquals(expected, run(flags, scripts), "backend " + String.join(" ", flags));
+    }
+
+    @Test
+    void arithmetic() {
+        assertParity("7\n-1\n300\n0.3333333333333333\n0.30000000000000004\n7.5\ntrue\nfalse\ntrue\n--\nexit 0",
+                "var a = 1;\n"
+                        + "print a + 2 * 3;\n"
+                        + "print -a;\n"
+                        + "print (10 + 20 - 20) * (10 + 20);\n"
+                        + "print 1 / 3;\n"
+                        + "print 0.1 + 0.2;\n"
+                        + "print 007.50;\n"
+                        + "print 1 + 2 == 3;\n"
+                        + "print 2 <= 1;\n"
+                        + "print 1 == 1.0;\n");
+    }
+
+    @Test
+    void numberFormatting() {
+        assertParity("-0\n-0\n0\n-0\nInfinity\n-Infinity\nNaN\n1.0E20\n1.0E-6\n1.234567895E8\n9.007199254740992E15\n--\nexit 0",
+                "print -0;\n"
+                        + "print 0 * -1;\n"
+                        + "print -0 + 0;\n"
+                        + "print (-0) / 1;\n"
+                        + "print 1 / 0;\n"
+                        + "print -1 / 0;\n"
+                        + "print 0 / 0;\n"
+                        + "print 100000000000000000000;\n"
+                        + "print 0.000001;\n"
+                        + "print 123456789.5;\n"
+                        + "print 9007199254740993;\n");
+    }
+
+    @Test
+    void stringConcatenation() {
+        StringBuilder many = new StringBuilder("var s = \"\";\n");
+        for (int i = 0; i < 100; i++)
+            many.append("var s = s + \"ab\";\n");
+        many.append("print s == \"").append("ab".repeat(100)).append("\";\n");
+
+        assertParity("abc\ntrue\nfalse\ntrue\n--\nexit 0",
+                "var b = \"b\";\n"
+                        + "print \"a\" + b + \"c\";\n"
+                        + "print \"a\" + \"b\" == \"ab\";\n"
+                        + "print (\"a\" + \"b\") == \"ba\";\n",
+                many.toString());
+    }
+
+    // what ran before the error is printed, the error has the line it happened on
+    @Test
+    void runtimeErrorsHaveTheirLine() {
+        assertParity("1\n--\nOperand must be a number.\n[line 3]\nexit 70",
+                "print 1;\n"
+                        + "var s = \"x\";\n"
+                        + "print -s;\n"
+                        + "print 2;\n");
+        assertParity("--\nOperands must be 2 numbers or 2 strings.\n[line 2]\nexit 70",
+                "\nprint 1 + \"x\";\n");
+        assertParity("--\nUndefined variable 'missing'.\n[line 1]\nexit 70", "print missing;");
+        assertParity("--\nCan only call functions and classes.\n[line 1]\nexit 70", "print 1 + \"a\"(2);");
+    }
+
+    // later runs see the globals of earlier ones, a failed run doesn't lose them
+    @Test
+    void globalsLiveAcrossRuns() {
+        assertParity("1\n3\n30\n3\n--\n"
+                + "[line 1] Error  at ';': Expect expression.\n"
+                + "Operand must be a number.\n[line 1]\n"
+                + "exit 70",
+                "var a = 1;",
+                "print a;",
+                "var b = a + 2;",
+                "print b;",
+                "print 1 +;",
+                "var a = b * 10;",
+                "print -\"x\";",
+                "print a;",
+                "print b;");
+    }
+}
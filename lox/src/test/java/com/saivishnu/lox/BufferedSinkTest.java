@@ -0,0 +1,207 @@
+package com.saivishnu.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BufferedSinkTest {
+
+    private static final Charset UTF_8 = StandardCharsets.UTF_8;
+
+    // small sizes, so buffers fill and get swapped many times
+    private static final int FLUSH_SIZE = 100;
+    private static final long INTERVAL = 1;
+
+    // a stream that lets other threads run on every write, so the writer thread falls behind
+    private static class SlowStream extends OutputStream {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        @Override
+        public synchronized void write(int b) {
+            bytes.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            Thread.yield();
+            bytes.write(b, off, len);
+        }
+
+        synchronized byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    private static BufferedSink sink(OutputStream out, BufferedSink.Flush policy, boolean async) {
+        return new BufferedSink(out, UTF_8, policy, FLUSH_SIZE, INTERVAL, async);
+    }
+
+    /*
+     * lines of every kind: ASCII and not, numbers with and without digits
+     * after the point, empty ones, and now and then one larger than a buffer
+     */
+    private static void printLines(PrintSink sink, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < 20000; i++) {
+            switch (random.nextInt(6)) {
+                case 0:
+                    sink.println(i);
+                    break;
+                case 1:
+                    sink.println(random.nextDouble() * 1e9 - 5e8);
+                    break;
+                case 2:
+                    sink.println("line " + i + " é €");
+                    break;
+                case 3:
+                    sink.println("");
+                    break;
+                case 4:
+                    sink.println(random.nextInt(100) == 0 ? "x".repeat(BufferedSink.DEFAULT_CAPACITY + 7) : "y");
+                    break;
+                default:
+                    sink.println("text ".repeat(random.nextInt(30)));
+                    break;
+            }
+        }
+    }
+
+    // what PrintSink.of() writes, no buffering and no threads
+    private static byte[] unbuffered(long seed) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintSink sink = PrintSink.of(new PrintStream(out, true, UTF_8));
+        printLines(sink, seed);
+        sink.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    void sameBytesAsUnbufferedWithEveryPolicy() {
+        byte[] expected = unbuffered(13);
+        for (BufferedSink.Flush policy : BufferedSink.Flush.values()) {
+            for (boolean async : new boolean[] { false, true }) {
+                SlowStream out = new SlowStream();
+                BufferedSink sink = sink(out, policy, async);
+                printLines(sink, 13);
+                sink.close();
+                assertArrayEquals(expected, out.toByteArray(), policy + (async ? " async" : ""));
+            }
+        }
+    }
+
+    // lines from several threads mix, but every thread's lines come out whole and in order
+    @Test
+    void everyThreadKeepsItsOrder() throws InterruptedException {
+        int threads = 8;
+        int lines = 5000;
+        for (BufferedSink.Flush policy : BufferedSink.Flush.values()) {
+            SlowStream out = new SlowStream();
+            BufferedSink sink = sink(out, policy, true);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> printers = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int id = thread;
+                printers.add(new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException error) {
+                        return;
+                    }
+                    for (int line = 0; line < lines; line++) {
+                        if (line % 2 == 0)
+                            sink.println("t" + id + " " + line);
+                        else
+                            sink.println(id * lines + line);
+                    }
+                }));
+            }
+            for (Thread printer : printers)
+                printer.start();
+            start.countDown();
+            for (Thread printer : printers)
+                printer.join();
+            sink.close();
+
+            int[] next = new int[threads];
+            for (String line : new String(out.toByteArray(), UTF_8).split(System.lineSeparator())) {
+                int id;
+                int number;
+                if (line.startsWith("t")) {
+                    id = Integer.parseInt(line.substring(1, line.indexOf(' ')));
+                    number = Integer.parseInt(line.substring(line.indexOf(' ') + 1));
+                } else {
+                    id = Integer.parseInt(line) / lines;
+                    number = Integer.parseInt(line) % lines;
+                }
+                assertEquals(next[id]++, number, policy + " thread " + id);
+            }
+            for (int id = 0; id < threads; id++)
+                assertEquals(lines, next[id], policy + " thread " + id);
+        }
+    }
+
+    /*
+     * scripts that print from the main thread and from a task, one after the
+     * other in a session: a run waits for its tasks, so the order is fixed and
+     * every policy has to print exactly what the default sink does
+     */
+    @Test
+    void scriptsPrintTheSameWithEveryPolicy() {
+        List<String> scripts = new ArrayList<>();
+        scripts.add("var s = \"\";\n");
+        for (int i = 0; i < 300; i++) {
+            scripts.add("print " + i + " / 7;\nvar s = s + \"ab\";\nspawn print \"task " + i + " \u00e9\" + s;\n");
+            scripts.add("spawn spawn print " + i + ";\n");
+            scripts.add("print s;\n");
+        }
+        String[] sources = scripts.toArray(new String[0]);
+        String[][] flags = { { "--async-print" }, { "--async-print", "--flush=exit" },
+                { "--async-print", "--flush=size", "--flush-size=64" }, { "--async-print", "--flush-interval=1" },
+                { "--flush=size", "--flush-size=64" }, { "--flush-interval=1" } };
+        SessionRun expected = SessionRun.of(new String[0], sources);
+        assertEquals(0, expected.exitCode, expected.err);
+        for (String[] flag : flags)
+            assertEquals(expected.toString(), SessionRun.of(flag, sources).toString(), String.join(" ", flag));
+    }
+
+    private static List<Thread> sinkThreads() {
+        List<Thread> threads = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+            if (thread.getName().startsWith("lox-print-"))
+                threads.add(thread);
+        return threads;
+    }
+
+    // close() writes out what is left and the writer and the timer are gone after it
+    @Test
+    void closeDrainsAndStopsThreads() throws InterruptedException {
+        List<Thread> before = sinkThreads();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // an hour between flushes: nothing is due before close()
+        BufferedSink sink = new BufferedSink(out, UTF_8, BufferedSink.Flush.INTERVAL, FLUSH_SIZE, 3600 * 1000, true);
+        List<Thread> started = sinkThreads();
+        started.removeAll(before);
+        assertEquals(2, started.size(), started.toString());
+
+        sink.println("first");
+        sink.println(2);
+        assertEquals(0, out.size());
+        sink.close();
+        assertEquals("first" + System.lineSeparator() + "2" + System.lineSeparator(), out.toString(UTF_8));
+        for (Thread thread : started) {
+            // the timer's thread ends right after close() returns
+            thread.join(5000);
+            assertFalse(thread.isAlive(), thread.getName());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.saivishnu.lox;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * the closure backend against the tree walker, on what is particular to
+ * closures: operators that leave their fast path for the generic one, long
+ * chains that run in a loop, and --closure next to the other flags
+ */
+class ClosureCompilerTest {
+
+    private static final String[][] CLOSURES = { { "--closure" }, { "--closure", "--optimize" },
+            { "--closure", "--stream" }, { "--closure", "--optimize", "--stream" } };
+
+    // every closure setup prints what the tree walker prints, errors and exit code included
+    private static void assertLikeTheTreeWalker(String source) {
+        SessionRun expected = SessionRun.of(new String[0], source);
+        for (String[] flags : CLOSURES) {
+            SessionRun run = SessionRun.of(flags, source);
+            String where = String.join(" ", flags);
+            assertEquals(expected.out, run.out, where);
+            assertEquals(expected.err, run.err.replaceAll("\\[optimizer\\].*\n", ""), where);
+            assertEquals(expected.exitCode, run.exitCode, where);
+        }
+    }
+
+    // a chain longer than Chains.LONG, all of it after `print `
+    private static String chain(String first, String operator, String operand, int length) {
+        StringBuilder chain = new StringBuilder(first);
+        for (int i = 0; i < length; i++)
+            chain.append(' ').append(operator).append(' ').append(operand);
+        return chain.toString();
+    }
+
+    // the same operator on numbers, strings, nil and booleans
+    @Test
+    void operatorsOnEveryType() {
+        assertLikeTheTreeWalker("var n = 2;\nvar s = \"s\";\n"
+                + "print n + n;\nprint s + s;\nprint n - 1 < n;\nprint n * 3 >= 6;\nprint n / 4 <= 0.5;\n"
+                + "print n == 2;\nprint s == \"s\";\nprint nil == nil;\nprint nil != false;\nprint s != n;\n"
+                + "print true == !nil;\nprint -n > -3;\n");
+    }
+
+    @Test
+    void errorsLeaveTheFastPath() {
+        assertLikeTheTreeWalker("var s = \"s\";\nprint 1;\nprint 2 * s;\n");
+        assertLikeTheTreeWalker("var s = \"s\";\nprint s < 1;\n");
+        assertLikeTheTreeWalker("var n = 1;\nprint n + nil;\n");
+        assertLikeTheTreeWalker("print -nil;\n");
+    }
+
+    @Test
+    void longChains() {
+        int length = Chains.LONG * 3;
+        assertLikeTheTreeWalker("var one = 1;\nprint " + chain("one", "+", "one", length) + ";\n"
+                + "print " + chain("100", "-", "one", length) + ";\n"
+                + "print " + chain("1", "*", "2", length) + ";\n"
+                + "var s = \"a\";\nprint " + chain("s", "+", "s", length) + ";\n"
+                + "print " + chain("1", "+", "one", length) + " == " + (length + 1) + ";\n");
+        // the operator that fails in the middle of a chain reports its line
+        assertLikeTheTreeWalker("var one = 1;\nprint " + chain("one", "+", "one", length) + "\n + \"x\" + one;\n");
+    }
+
+    @Test
+    void groupingsAndCalls() {
+        assertLikeTheTreeWalker("var c = channel(1);\nsend(c, (1 + 2) * -(3 - 4));\nprint receive(c);\n"
+                + "print ((((\"a\"))));\nprint 1(2);\n");
+    }
+}
@@ -0,0 +1,60 @@
+package com.saivishnu.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * a parallel pass checked against the sequential one it replaces: both turn
+ * the same text into a String that has everything they produce, errors
+ * included, and those have to be equal however the text is split up
+ */
+abstract class DifferentialTest {
+
+    // pieces the parallel pass splits the text into, 10000 is one per line or statement
+    private static final int[] SPLITS = { 2, 7, 64, 10000 };
+
+    final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    abstract String sequential(String text);
+
+    abstract String parallel(String text, int splits);
+
+    // what the sequential pass gives, after checking the parallel one gives the same at every split
+    String assertMatches(String text, String what) {
+        String expected = sequential(text);
+        for (int splits : SPLITS)
+            assertEquals(expected, parallel(text, splits), what + " in " + splits + " pieces");
+        return expected;
+    }
+
+    // random texts of 0 to extra characters more than length, glued from pieces
+    void assertRandomTextsMatch(long seed, int texts, int length, int extra, Function<Random, Supplier<String>> pieces) {
+        Random random = new Random(seed);
+        for (int source = 0; source < texts; source++) {
+            Supplier<String> piece = pieces.apply(random);
+            StringBuilder text = new StringBuilder();
+            int size = length + random.nextInt(extra);
+            while (text.length() < size)
+                text.append(piece.get());
+            assertMatches(text.toString(), "source " + source);
+        }
+    }
+
+    // a reporter that prints into err
+    static ErrorReporter reporter(ByteArrayOutputStream err) {
+        return new ErrorReporter(new PrintStream(err, true));
+    }
+}
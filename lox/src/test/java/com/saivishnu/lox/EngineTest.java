@@ -0,0 +1,110 @@
+package com.saivishnu.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EngineTest {
+
+    // reads and writes its globals, has a chain the interpreter runs in a loop, and spawns a task
+    private static final String SOURCE = "var doubled = value + value;\n"
+            + "print doubled;\n"
+            + "print 1 + 2 + 3 + 4 + 5 + 6 + 7 + 8 + 9 + 10 + count;\n"
+            + "var c = channel(1);\n"
+            + "spawn send(c, value);\n"
+            + "print receive(c) == value;\n"
+            + "var count = count + 1;\n";
+
+    @Test
+    void runsWithTheContextsGlobals() throws CompileException {
+        Engine engine = new Engine();
+        Program program = engine.compile(SOURCE);
+        Result result = engine.execute(program, new Context().define("value", 2).define("count", 10));
+        assertTrue(result.succeeded());
+        assertEquals("4\n65\ntrue\n", result.output());
+        assertEquals(11.0, result.globals().get("count"));
+        assertEquals(4.0, result.globals().get("doubled"));
+    }
+
+    @Test
+    void compileReportsEveryError() {
+        CompileException error = assertThrows(CompileException.class,
+                () -> new Engine().compile("print 1 +;\nprint 2;\nvar = 3;\n"));
+        assertEquals(2, error.errors().size());
+        assertEquals(1, error.errors().get(0).line());
+        assertEquals(3, error.errors().get(1).line());
+    }
+
+    @Test
+    void runtimeErrorIsReturned() throws CompileException {
+        Engine engine = new Engine();
+        Result result = engine.execute(engine.compile("print 1;\nprint -value;\nprint 2;\n"),
+                new Context().define("value", "text"));
+        assertFalse(result.succeeded());
+        assertEquals("1\n", result.output());
+        assertEquals(2, result.error().line());
+    }
+
+    // a string operand of * or / is a runtime error too, not a ClassCastException
+    @Test
+    void arithmeticOnAStringIsReturned() throws CompileException {
+        Engine engine = new Engine();
+        Result result = engine.execute(engine.compile("print 1;\nprint \"a\" * 2;\nprint 2 / \"b\";\n"),
+                new Context());
+        assertFalse(result.succeeded());
+        assertEquals("1\n", result.output());
+        assertEquals(2, result.error().line());
+    }
+
+    /*
+     * one program, many threads: every execution sees only its own context's
+     * globals and prints only its own output. half the threads pass numbers,
+     * half strings, so the shared binary nodes get rewritten while they run
+     */
+    @Test
+    void programIsSharedBetweenThreads() throws Exception {
+        Engine engine = new Engine();
+        Program program = engine.compile(SOURCE);
+        int threads = 8;
+        int runs = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int id = thread;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int run = 0; run < runs; run++) {
+                        int count = id * runs + run;
+                        Object value = id % 2 == 0 ? (Object) (double) count : "s" + count;
+                        Result result = engine.execute(program,
+                                new Context().define("value", value).define("count", count));
+
+                        String doubled = id % 2 == 0 ? NumberText.toString(2.0 * count) : "s" + count + "s" + count;
+                        String where = "thread " + id + " run " + run;
+                        assertTrue(result.succeeded(), where);
+                        assertEquals(doubled + "\n" + NumberText.toString(55.0 + count) + "\ntrue\n", result.output(),
+                                where);
+                        assertEquals((double) count + 1, result.globals().get("count"), where);
+                        assertEquals(id % 2 == 0 ? (Object) (2.0 * count) : doubled, result.globals().get("doubled"),
+                                where);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results)
+                result.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
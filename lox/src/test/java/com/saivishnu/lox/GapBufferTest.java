@@ -0,0 +1,51 @@
+package com.saivishnu.lox;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GapBufferTest {
+
+    // the same edits on a StringBuilder, with the gap moving back and forth and growing
+    @Test
+    void randomEditsMatchAStringBuilder() {
+        Random random = new Random(17);
+        StringBuilder expected = new StringBuilder("some text\nto start with");
+        GapBuffer buffer = new GapBuffer(expected.toString());
+
+        for (int edit = 0; edit < 5000; edit++) {
+            int offset = random.nextInt(expected.length() + 1);
+            int removed = random.nextInt(Math.min(10, expected.length() - offset) + 1);
+            StringBuilder inserted = new StringBuilder();
+            int length = random.nextInt(edit % 100 == 0 ? 200 : 8);
+            for (int i = 0; i < length; i++)
+                inserted.append((char) ('a' + random.nextInt(26)));
+
+            buffer.replace(offset, removed, inserted.toString());
+            expected.replace(offset, offset + removed, inserted.toString());
+
+            assertEquals(expected.length(), buffer.length());
+            if (expected.length() > 0) {
+                int at = random.nextInt(expected.length());
+                assertEquals(expected.charAt(at), buffer.charAt(at));
+                int end = at + random.nextInt(expected.length() - at + 1);
+                assertEquals(expected.substring(at, end), buffer.substring(at, end));
+                assertEquals(expected.substring(at, end), buffer.subSequence(at, end).toString());
+            }
+        }
+        assertEquals(expected.toString(), buffer.toString());
+    }
+
+    @Test
+    void emptyBuffer() {
+        GapBuffer buffer = new GapBuffer("");
+        assertEquals(0, buffer.length());
+        buffer.replace(0, 0, "abc");
+        buffer.replace(1, 1, "");
+        assertEquals("ac", buffer.toString());
+        buffer.replace(0, 2, "");
+        assertEquals("", buffer.toString());
+    }
+}
@@ -0,0 +1,106 @@
+package com.saivishnu.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalParserTest {
+
+    // bits of text to build documents and edits from: whole statements, half ones, newlines, comments, strings
+    private static final String[] PIECES = { "var x = 1;", "print x + 2;", "\n", " ", "// c\n", "\"str\"", "\"", ";",
+            "print", "var", "(", ")", "spawn ", "send(ch, 3);", "1.5", "-", "a", "b", "==", "\n\n", "x", "/", "*",
+            "print 1 + 2 + 3 + 4 + 5 + 6 + 7 + 8 + 9 + a;" };
+
+    private static ErrorReporter quietReporter() {
+        return new ErrorReporter(new PrintStream(new ByteArrayOutputStream(), true));
+    }
+
+    // statements, with their lines, and whether there was an error, of a full parse of text
+    private static String fullParse(String text) {
+        ErrorReporter reporter = quietReporter();
+        SymbolTable symbols = new SymbolTable();
+        List<Stmt> statements = new Parser(new Scanner(Source.of(text), reporter, symbols).scan(), reporter).parse();
+        return AstCodecTest.dump(statements, symbols) + "error " + reporter.hadError;
+    }
+
+    private static String incremental(IncrementalParser parser, SymbolTable symbols) {
+        return AstCodecTest.dump(parser.statements(), symbols) + "error " + parser.hadError();
+    }
+
+    @Test
+    void randomEditsMatchAFullParse() {
+        Random random = new Random(20);
+        for (int document = 0; document < 200; document++) {
+            StringBuilder initial = new StringBuilder();
+            for (int i = 0; i < 30; i++)
+                initial.append(PIECES[random.nextInt(PIECES.length)]);
+            String text = initial.toString();
+            SymbolTable symbols = new SymbolTable();
+            IncrementalParser parser = new IncrementalParser(text, quietReporter(), symbols);
+            assertEquals(fullParse(text), incremental(parser, symbols));
+
+            for (int edit = 0; edit < 40; edit++) {
+                int offset = random.nextInt(text.length() + 1);
+                int removed = random.nextInt(Math.min(6, text.length() - offset) + 1);
+                String inserted = random.nextInt(3) == 0 ? "" : PIECES[random.nextInt(PIECES.length)];
+                parser.edit(offset, removed, inserted);
+                text = text.substring(0, offset) + inserted + text.substring(offset + removed);
+
+                String where = "document " + document + " edit " + edit + ":\n" + text;
+                assertEquals(text, parser.text(), where);
+                assertEquals(fullParse(text), incremental(parser, symbols), where);
+            }
+        }
+    }
+
+    // lines added or removed above a statement move its tokens without parsing it again
+    @Test
+    void linesMoveWithEditsAbove() {
+        String text = "var a = 1;\nprint a;\n\nprint a +\n  2;\n";
+        SymbolTable symbols = new SymbolTable();
+        IncrementalParser parser = new IncrementalParser(text, quietReporter(), symbols);
+
+        parser.edit(0, 0, "\n\n\n");
+        text = "\n\n\n" + text;
+        assertEquals(1, parser.reparsed());
+        assertEquals(fullParse(text), incremental(parser, symbols));
+
+        parser.edit(text.indexOf("print a;"), 0, "var b = 2;\n");
+        text = parser.text();
+        assertEquals(fullParse(text), incremental(parser, symbols));
+
+        parser.edit(0, 3, "");
+        text = text.substring(3);
+        assertEquals(fullParse(text), incremental(parser, symbols));
+    }
+
+    // an error goes away with the edit that fixes it
+    @Test
+    void errorsFollowTheText() {
+        String text = "var a = 1;\nprint a +;\nprint a;\n";
+        IncrementalParser parser = new IncrementalParser(text, quietReporter());
+        assertTrue(parser.hadError());
+        assertNull(parser.statements().get(1));
+
+        parser.edit(text.indexOf("+;") + 1, 0, " 1");
+        assertFalse(parser.hadError());
+        assertNotNull(parser.statements().get(1));
+
+        parser.edit(0, 0, "\"");
+        assertTrue(parser.hadError());
+    }
+
+    @Test
+    void editOutOfRangeThrows() {
+        IncrementalParser parser = new IncrementalParser("print 1;", quietReporter());
+        assertThrows(IllegalArgumentException.class, () -> parser.edit(-1, 0, ""));
+        assertThrows(IllegalArgumentException.class, () -> parser.edit(5, 4, ""));
+        assertThrows(IllegalArgumentException.class, () -> parser.edit(0, -1, ""));
+        assertEquals("print 1;", parser.text());
+    }
+}
@@ -0,0 +1,95 @@
+package com.saivishnu.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NumberTextTest {
+
+    private static final double[] NUMBERS = { 0, -0.0, 1, -1, 7, 10, 42, 100, 12345, -98765, 9999999, -9999999,
+            1e7, -1e7, 1e7 + 1, 12345678, 0.5, -0.5, 0.1, 0.3, 1.5, 2.25, 1 / 3.0, 123.456, 1e-3, 1e-4, 0.000001,
+            1e20, 1e21, 1e22, -1e100, 1.7976931348623157e308, Double.MAX_VALUE, Double.MIN_VALUE,
+            Double.MIN_NORMAL, -2.2250738585072014E-308, 9007199254740993.0, 4.35, 100.0 / 3, Math.PI, Math.E,
+            Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY };
+
+    // what print showed before NumberText: Double.toString() without a trailing ".0"
+    private static String stringify(double number) {
+        String text = Double.toString(number);
+        if (text.endsWith(".0"))
+            text = text.substring(0, text.length() - 2);
+        return text;
+    }
+
+    // every way NumberText writes a number gives the old text
+    private static void assertSameText(double number) {
+        String expected = stringify(number);
+        String where = "bits " + Long.toHexString(Double.doubleToRawLongBits(number));
+        assertEquals(expected, NumberText.toString(number), where);
+
+        StringBuilder sb = new StringBuilder("x");
+        NumberText.append(sb, number);
+        assertEquals("x" + expected, sb.toString(), where);
+        assertTrue(expected.length() <= NumberText.MAX_LENGTH, where);
+
+        if (NumberText.isPlainIntegral(number)) {
+            byte[] bytes = new byte[NumberText.MAX_LENGTH + 1];
+            int end = NumberText.writeIntegral(number, bytes, 1);
+            assertEquals(expected, new String(bytes, 1, end - 1, StandardCharsets.US_ASCII), where);
+        }
+    }
+
+    @Test
+    void sameTextAsDoubleToString() {
+        for (double number : NUMBERS) {
+            assertSameText(number);
+            assertSameText(-number);
+        }
+    }
+
+    @Test
+    void integersAroundThePlainLimit() {
+        for (int i = -2000; i <= 2000; i++) {
+            assertSameText(i);
+            assertSameText(1e7 + i);
+            assertSameText(-1e7 + i);
+        }
+    }
+
+    @Test
+    void randomNumbers() {
+        Random random = new Random(14);
+        for (int i = 0; i < 100000; i++) {
+            assertSameText(Double.longBitsToDouble(random.nextLong()));
+            assertSameText(random.nextInt());
+            assertSameText((random.nextInt(2000000) - 1000000) / 100.0);
+        }
+    }
+
+    // the sink writes numbers without a String, the text is the same
+    @Test
+    void sinkPrintsTheSameText() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BufferedSink sink = new BufferedSink(out, StandardCharsets.UTF_8, BufferedSink.Flush.EXIT, 0, 0, false);
+        StringBuilder expected = new StringBuilder();
+        for (double number : NUMBERS) {
+            sink.println(number);
+            sink.println(-number);
+            expected.append(stringify(number)).append('\n').append(stringify(-number)).append('\n');
+        }
+        sink.close();
+        assertEquals(expected.toString(), out.toString(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        PrintSink printSink = PrintSink.of(new PrintStream(plain, true));
+        printSink.println(-0.0);
+        printSink.println(1e21);
+        printSink.flush();
+        assertEquals("-0\n1.0E21\n", plain.toString().replace("\r\n", "\n"));
+    }
+}
@@ -0,0 +1,66 @@
+package com.saivishnu.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelParserTest extends DifferentialTest {
+
+    // statements, some broken, and bits that break the ones around them
+    private static final String[] PIECES = { "var x = 1;", "print x + 2;", "print (x);", "var y;", "spawn print x;",
+            "send(ch, 1 + 2, \"s\");", "print 1 + 2 + 3 + 4 + 5 + 6 + 7 + 8 + 9 + x;", "print -(-x) == !nil;",
+            "\n", " ", "\"a\nb\"", ";", "print", "var", "(", ")", "+", "x", "1", "spawn ", "==", "var = 3;",
+            "print 1 +;" };
+
+    // the statements with their tokens' lines, then the errors as reported
+    private static String parsed(List<Stmt> statements, SymbolTable symbols, ByteArrayOutputStream err) {
+        return AstCodecTest.dump(statements, symbols) + err;
+    }
+
+    @Override
+    String sequential(String text) {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        ErrorReporter reporter = reporter(err);
+        SymbolTable symbols = new SymbolTable();
+        List<Stmt> statements = new Parser(new Scanner(Source.of(text), reporter, symbols).scan(), reporter).parse();
+        return parsed(statements, symbols, err);
+    }
+
+    @Override
+    String parallel(String text, int ranges) {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        ErrorReporter reporter = reporter(err);
+        SymbolTable symbols = new SymbolTable();
+        TokenBuffer tokens = new Scanner(Source.of(text), reporter, symbols).scan();
+        List<Stmt> statements = new ParallelParser(tokens, reporter, pool, 0, ranges).parse();
+        return parsed(statements, symbols, err);
+    }
+
+    @Test
+    void randomSourcesMatchTheParser() {
+        assertRandomTextsMatch(23, 300, 50, 3000, random -> {
+            // from nothing but whole statements to mostly broken ones
+            double broken = random.nextDouble();
+            return () -> PIECES[random.nextDouble() < broken ? random.nextInt(PIECES.length) : random.nextInt(8)];
+        });
+    }
+
+    // recovering from an error runs past the end of its range into the next ones
+    @Test
+    void errorRecoveryAcrossRanges() {
+        String text = "print 1;\nprint (1 + 2 var a = 3; print a; print 4;\nprint 5;\nvar;\n;print 6;";
+        String expected = assertMatches(text, "recovery");
+        assertTrue(expected.contains("[line 2] Error  at 'var': Expect ')' after expression."), expected);
+    }
+
+    // an error at the very end names the end, not the token after some range
+    @Test
+    void errorAtTheEnd() {
+        String text = "print 1;\n".repeat(20) + "print 2 +";
+        String expected = assertMatches(text, "error at the end");
+        assertTrue(expected.endsWith("Error  at end: Expect expression.\n"), expected);
+    }
+}
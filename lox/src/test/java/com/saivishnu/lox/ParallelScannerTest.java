@@ -0,0 +1,76 @@
+package com.saivishnu.lox;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelScannerTest extends DifferentialTest {
+
+    /*
+     * chunks are cut after a newline, so what runs across a chunk's edge is a
+     * string with newlines in it, or a quote that never ends. comments with
+     * quotes in them must not look like strings
+     */
+    private static final String[] PIECES = { "var ", "x", "foo_1", " ", "\n", "\n", "\"", "\"a\nb\"",
+            "\"long\n\n\nstring\n\"", "// c \" \n", "12.5", "1.", "+", "/", "@", "#", "print ", ";", "(", ")", "and",
+            "nil", "\r", "\t", "!=", "==" };
+
+    // every token with its position, line and symbol, the symbol table and the errors
+    private static String scanned(TokenBuffer tokens, SymbolTable symbols, ByteArrayOutputStream err) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < tokens.size(); i++)
+            sb.append(tokens.type(i)).append(' ').append(tokens.start(i)).append('+').append(tokens.length(i))
+                    .append(" @").append(tokens.line(i)).append(" #").append(tokens.symbol(i)).append(' ')
+                    .append(tokens.literal(i)).append('\n');
+        for (int id = 0; id < symbols.size(); id++)
+            sb.append(id).append(' ').append(symbols.name(id)).append('\n');
+        return sb.append(err).toString();
+    }
+
+    @Override
+    String sequential(String text) {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        SymbolTable symbols = new SymbolTable();
+        TokenBuffer tokens = new Scanner(Source.of(text), reporter(err), symbols).scan();
+        return scanned(tokens, symbols, err);
+    }
+
+    @Override
+    String parallel(String text, int chunks) {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        SymbolTable symbols = new SymbolTable();
+        TokenBuffer tokens = new ParallelScanner(Source.of(text), reporter(err), symbols, pool, 0, chunks).scan();
+        return scanned(tokens, symbols, err);
+    }
+
+    @Test
+    void randomSourcesMatchTheScanner() {
+        assertRandomTextsMatch(22, 200, 100, 5000, random -> {
+            // how often a lone quote shows up, from never to often
+            double quotes = random.nextDouble() * 0.1;
+            return () -> {
+                String piece = PIECES[random.nextInt(PIECES.length)];
+                while (piece.equals("\"") && random.nextDouble() > quotes)
+                    piece = PIECES[random.nextInt(PIECES.length)];
+                return piece;
+            };
+        });
+    }
+
+    // one string over many chunks, the lines after it still count its newlines
+    @Test
+    void stringAcrossManyChunks() {
+        String text = "var a = 1;\nprint \"" + "line\n".repeat(50) + "\";\nprint a @;\n";
+        String expected = assertMatches(text, "string");
+        assertTrue(expected.contains("[line 53] Error : Unexpected token."), expected);
+    }
+
+    @Test
+    void unterminatedStringAtTheEnd() {
+        String text = "print 1;\n" + "print 2;\n".repeat(20) + "print \"never\nends\n;\n";
+        String expected = assertMatches(text, "unterminated string");
+        assertTrue(expected.contains("[line 25] Error : String not closed properly"), expected);
+    }
+}
@@ -0,0 +1,124 @@
+package com.saivishnu.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParserTest {
+
+    private static final String[][] BACKENDS = { {}, { "--vm" }, { "--closure" }, { "--optimize" }, { "--profile" } };
+
+    // the tree of the expression in a print statement, written out by AstPrinter
+    private static String tree(String expression) {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        ErrorReporter reporter = new ErrorReporter(new PrintStream(err, true));
+        List<Stmt> statements = new Parser(new Scanner(Source.of("print " + expression + ";"), reporter).scan(),
+                reporter).parse();
+        assertFalse(reporter.hadError, err.toString());
+        return new AstPrinter().print(((Stmt.Print) statements.get(0)).expression);
+    }
+
+    @Test
+    void precedence() {
+        assertEquals("(+ 1.0 (* 2.0 3.0))", tree("1 + 2 * 3"));
+        assertEquals("(+ (* 1.0 2.0) 3.0)", tree("1 * 2 + 3"));
+        assertEquals("(- (/ a 2.0) (* b c))", tree("a / 2 - b * c"));
+        assertEquals("(== (< 1.0 (+ 2.0 3.0)) (>= 4.0 5.0))", tree("1 < 2 + 3 == 4 >= 5"));
+        assertEquals("(!= a (> b c))", tree("a != b > c"));
+        assertEquals("(* (- a) (- b))", tree("-a * -b"));
+        assertEquals("(== (! a) (! (! b)))", tree("!a == !!b"));
+    }
+
+    // binary operators of the same precedence group to the left
+    @Test
+    void associativity() {
+        assertEquals("(- (- 1.0 2.0) 3.0)", tree("1 - 2 - 3"));
+        assertEquals("(* (/ 1.0 2.0) 3.0)", tree("1 / 2 * 3"));
+        assertEquals("(+ (- (+ a b) c) d)", tree("a + b - c + d"));
+        assertEquals("(!= (== a b) c)", tree("a == b != c"));
+        assertEquals("(<= (< a b) c)", tree("a < b <= c"));
+    }
+
+    @Test
+    void groupingsAndCalls() {
+        assertEquals("(* (group (+ 1.0 2.0)) 3.0)", tree("(1 + 2) * 3"));
+        assertEquals("(- a (group (- b (group c))))", tree("a - (b - (c))"));
+        assertEquals("(- (group (- (group (+ 1.0 2.0)))))", tree("-(-(1 + 2))"));
+        assertEquals("(call g)", tree("g()"));
+        assertEquals("(+ (call (call f 1.0 (+ 2.0 3.0)) a) (call g))", tree("f(1, 2 + 3)(a) + g()"));
+        assertEquals("(- (call f (group (* a b))))", tree("-f((a * b))"));
+        assertEquals("(call (group (+ a b)) (- c))", tree("(a + b)(-c)"));
+    }
+
+    // a chain down the left side is not nesting, generated scripts are full of them
+    @Test
+    void longBinaryChainParsesAndRuns() {
+        StringBuilder source = new StringBuilder("var one = 1;\nprint one");
+        for (int i = 1; i < 10000; i++)
+            source.append(" + one");
+        source.append(";\n");
+
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        ErrorReporter reporter = new ErrorReporter(new PrintStream(err, true));
+        List<Stmt> statements = new Parser(new Scanner(Source.of(source.toString()), reporter).scan(), reporter).parse();
+        assertFalse(reporter.hadError, err.toString());
+        assertEquals(2, statements.size());
+
+        for (String[] flags : BACKENDS) {
+            SessionRun run = SessionRun.of(flags, source.toString());
+            assertEquals("10000\n", run.out, String.join(" ", flags));
+            assertEquals(0, run.exitCode, String.join(" ", flags));
+        }
+    }
+
+    @Test
+    void longStringChainRuns() {
+        String source = "var s = \"a\"" + " + \"a\"".repeat(9999) + ";\nprint s == \"" + "a".repeat(10000) + "\";\n";
+        for (String[] flags : BACKENDS)
+            assertEquals("true\n", SessionRun.of(flags, source).out, String.join(" ", flags));
+    }
+
+    // deeper than the passes after the parser can walk: a syntax error, not a StackOverflowError
+    @Test
+    void deepNestingIsASyntaxError() {
+        int depth = 200000;
+        String[] sources = {
+                "print " + "(".repeat(depth) + "1" + ")".repeat(depth) + ";",
+                "print " + "-".repeat(depth) + "1;",
+                "print " + "1 + (".repeat(depth) + "1" + ")".repeat(depth) + ";",
+                "print " + "clock(".repeat(depth) + ")".repeat(depth) + ";",
+                "spawn ".repeat(depth) + "print 1;",
+        };
+        for (String source : sources) {
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            ErrorReporter reporter = new ErrorReporter(new PrintStream(err, true));
+            List<Stmt> statements = new Parser(new Scanner(Source.of(source), reporter).scan(), reporter).parse();
+            assertTrue(reporter.hadError);
+            assertTrue(err.toString().contains("nested too deeply."), err.toString());
+            assertNull(statements.get(0));
+
+            for (String[] flags : BACKENDS) {
+                SessionRun run = SessionRun.of(flags, source);
+                assertTrue(run.err.startsWith("[line 1] Error"), run.toString());
+                assertEquals(65, run.exitCode, run.toString());
+            }
+        }
+    }
+
+    @Test
+    void nestingUpToTheLimitRuns() {
+        int depth = Parser.MAX_DEPTH - 1;
+        String source = "print " + "(".repeat(depth) + "1" + ")".repeat(depth) + ";";
+        for (String[] flags : BACKENDS)
+            assertEquals("1\n", SessionRun.of(flags, source).out, String.join(" ", flags));
+
+        String tooDeep = "print " + "(".repeat(depth + 1) + "1" + ")".repeat(depth + 1) + ";";
+        SessionRun run = SessionRun.of(new String[0], tooDeep);
+        assertEquals("--\n[line 1] Error  at ')': Expression nested too deeply.\n", run.toString());
+        assertEquals(65, run.exitCode);
+    }
+}
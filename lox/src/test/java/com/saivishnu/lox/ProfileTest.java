@@ -0,0 +1,107 @@
+package com.saivishnu.lox;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * what --profile reports for a small script with a task, leaving out the
+ * timings: which line every node is counted on, and the call paths
+ */
+class ProfileTest {
+
+    private static final String SCRIPT = "var a = 1;\n"
+            + "print a + 2;\n"
+            + "var c = channel(0);\n"
+            + "spawn send(c, -a);\n"
+            + "print receive(c);\n";
+
+    @TempDir
+    Path directory;
+
+    // line -> statements and nodes run on it, from the report's table
+    private static Map<Integer, List<Long>> lineCounts(String err) {
+        Map<Integer, List<Long>> lines = new TreeMap<>();
+        boolean inTable = false;
+        for (String line : err.split("\n")) {
+            if (line.contains("hottest nodes:"))
+                break;
+            String[] columns = line.replace("[profile]", "").trim().split("\\s+");
+            if (inTable)
+                lines.put(Integer.parseInt(columns[0]), Arrays.asList(Long.parseLong(columns[3]),
+                        Long.parseLong(columns[4])));
+            inTable |= columns[0].equals("line");
+        }
+        return lines;
+    }
+
+    @Test
+    void reportAndCollapsedStacks() throws IOException {
+        Path stacks = directory.resolve("stacks.txt");
+        SessionRun run = SessionRun.of(new String[] { "--profile-stacks=" + stacks }, SCRIPT);
+        assertEquals("3\n-1\n", run.out);
+        assertEquals(0, run.exitCode, run.err);
+        String err = run.err.replace(System.lineSeparator(), "\n");
+
+        // the task's nodes count on line 4 like its spawn, literals on the line of what they are in
+        Map<Integer, List<Long>> expected = new TreeMap<>();
+        expected.put(1, Arrays.asList(1L, 2L));
+        expected.put(2, Arrays.asList(1L, 4L));
+        expected.put(3, Arrays.asList(1L, 4L));
+        expected.put(4, Arrays.asList(2L, 7L));
+        expected.put(5, Arrays.asList(1L, 4L));
+        assertEquals(expected, lineCounts(err), err);
+        assertTrue(err.startsWith("[profile] 21 nodes run in "), err);
+
+        // the task's paths go on from the spawn that started it
+        List<String> paths = new ArrayList<>();
+        for (String line : Files.readAllLines(stacks, StandardCharsets.UTF_8)) {
+            int value = line.lastIndexOf(' ');
+            assertTrue(Long.parseLong(line.substring(value + 1)) >= 0, line);
+            paths.add(line.substring(0, value));
+        }
+        assertEquals(Arrays.asList(
+                "script;print (line 2)",
+                "script;print (line 2);binary + (line 2)",
+                "script;print (line 2);binary + (line 2);literal (line 2)",
+                "script;print (line 2);binary + (line 2);variable a (line 2)",
+                "script;print (line 5)",
+                "script;print (line 5);call (line 5)",
+                "script;print (line 5);call (line 5);variable c (line 5)",
+                "script;print (line 5);call (line 5);variable receive (line 5)",
+                "script;spawn (line 4)",
+                "script;spawn (line 4);expression (line 4)",
+                "script;spawn (line 4);expression (line 4);call (line 4)",
+                "script;spawn (line 4);expression (line 4);call (line 4);unary - (line 4)",
+                "script;spawn (line 4);expression (line 4);call (line 4);unary - (line 4);variable a (line 4)",
+                "script;spawn (line 4);expression (line 4);call (line 4);variable c (line 4)",
+                "script;spawn (line 4);expression (line 4);call (line 4);variable send (line 4)",
+                "script;var a (line 1)",
+                "script;var a (line 1);literal (line 1)",
+                "script;var c (line 3)",
+                "script;var c (line 3);call (line 3)",
+                "script;var c (line 3);call (line 3);literal (line 3)",
+                "script;var c (line 3);call (line 3);variable channel (line 3)"), paths);
+    }
+
+    // every task records on its own, the report adds them all up
+    @Test
+    void tasksAreMerged() {
+        SessionRun run = SessionRun.of(new String[] { "--profile" },
+                "var c = channel(2);\nspawn send(c, 1); spawn send(c, 2);\nprint receive(c) + receive(c);\n");
+        assertEquals("3\n", run.out);
+        // two spawns, and in each task expression, call, variable send, variable c and literal
+        assertEquals(Arrays.asList(4L, 12L), lineCounts(run.err.replace(System.lineSeparator(), "\n")).get(2));
+    }
+}
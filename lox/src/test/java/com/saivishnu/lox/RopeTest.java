@@ -0,0 +1,142 @@
+package com.saivishnu.lox;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RopeTest {
+
+    private static final String[][] BACKENDS = { {}, { "--vm" }, { "--closure" } };
+
+    // a string longer than FLAT_LIMIT
+    private static final String LONG = "0123456789".repeat(Rope.FLAT_LIMIT / 10 + 1);
+
+    // text split into parts and concatenated left to right, so long results are ropes
+    private static Object concatenated(String text, int parts) {
+        Object value = "";
+        int step = Math.max(1, text.length() / parts);
+        for (int i = 0; i < text.length(); i += step)
+            value = Rope.concat(value, text.substring(i, Math.min(text.length(), i + step)));
+        return value;
+    }
+
+    @Test
+    void shortResultsAreStrings() {
+        assertEquals("ab", Rope.concat("a", "b"));
+        assertSame(LONG, Rope.concat(LONG, ""));
+        assertSame(LONG, Rope.concat("", LONG));
+        assertTrue(Rope.concat(LONG, "x") instanceof Rope);
+    }
+
+    // a rope is equal to the same text as a String and as a rope of any shape
+    @Test
+    void equalToTheSameText() {
+        Object rope = concatenated(LONG + LONG, 7);
+        Object other = concatenated(LONG + LONG, 100);
+        Object flipped = Rope.concat(LONG, concatenated(LONG, 3));
+        assertTrue(rope instanceof Rope);
+        assertTrue(other instanceof Rope);
+
+        assertEquals(LONG + LONG, rope.toString());
+        for (Object a : new Object[] { rope, other, flipped, LONG + LONG }) {
+            for (Object b : new Object[] { rope, other, flipped, LONG + LONG }) {
+                assertTrue(Interpreter.isEqual(a, b));
+                assertTrue(Interpreter.isEqual(b, a));
+            }
+        }
+
+        Object different = Rope.concat(LONG, LONG.replace('9', '8'));
+        assertFalse(Interpreter.isEqual(rope, different));
+        assertFalse(Interpreter.isEqual(different, LONG + LONG));
+        assertFalse(Interpreter.isEqual(rope, LONG));
+        assertFalse(Interpreter.isEqual(rope, null));
+        assertFalse(Interpreter.isEqual(null, rope));
+        assertFalse(Interpreter.isEqual(rope, 1.0));
+    }
+
+    // flattening doesn't recurse, a rope a million pieces deep is fine
+    @Test
+    void deepRopeFlattens() {
+        Object rope = LONG;
+        for (int i = 0; i < 1000000; i++)
+            rope = Rope.concat(rope, "x");
+        String text = rope.toString();
+        assertEquals(LONG.length() + 1000000, text.length());
+        assertSame(text, rope.toString());
+    }
+
+    /*
+     * a string grown by + and looked at after every step: a flattened rope
+     * lets go of its parts, or every earlier text would stay reachable, about
+     * 800MB here instead of 400KB
+     */
+    @Test
+    void flatteningKeepsOnlyTheText() {
+        String piece = "0123456789".repeat(10);
+        Object rope = "";
+        for (int i = 0; i < 4000; i++) {
+            rope = Rope.concat(rope, piece);
+            assertEquals((i + 1) * piece.length(), rope.toString().length());
+        }
+    }
+
+    // strings of different lengths are never equal, and aren't flattened to find out
+    @Test
+    void differentLengthsAreNotEqual() {
+        Object rope = concatenated(LONG + LONG, 7);
+        assertEquals(2 * LONG.length(), Rope.length(rope));
+        assertFalse(Interpreter.isEqual(rope, ""));
+        assertFalse(Interpreter.isEqual(LONG, rope));
+        assertFalse(Interpreter.isEqual(rope, Rope.concat(rope, "x")));
+    }
+
+    // == in every backend: rope against String, rope against rope, built differently
+    @Test
+    void equalityInEveryBackend() {
+        StringBuilder source = new StringBuilder("var a = \"\";\nvar b = \"\";\n");
+        // past FLAT_LIMIT chars, a and b are ropes
+        for (int i = 0; i < 300; i++) {
+            source.append("var a = a + \"ab\";\n");
+            source.append("var b = b + \"a\" + \"b\";\n");
+        }
+        String text = "ab".repeat(300);
+        source.append("print a == \"").append(text).append("\";\n");
+        source.append("print \"").append(text).append("\" == a;\n");
+        source.append("print a == b;\n");
+        source.append("print a != b + \"x\";\n");
+        source.append("print a == b + \"\";\n");
+        source.append("print a + a == b + b;\n");
+        for (String[] flags : BACKENDS)
+            assertEquals("true\ntrue\ntrue\ntrue\ntrue\ntrue\n--\n", SessionRun.of(flags, source.toString()).toString(),
+                    String.join(" ", flags));
+    }
+
+    // a rope sent over a channel comes out equal to the same text
+    @Test
+    void channelPayloads() {
+        StringBuilder source = new StringBuilder("var s = \"\";\n");
+        for (int i = 0; i < 100; i++)
+            source.append("var s = s + \"xyz\";\n");
+        String text = "xyz".repeat(100);
+        source.append("var c = channel(1);\n");
+        source.append("spawn send(c, s + s);\n");
+        source.append("print receive(c) == s + s;\n");
+        source.append("spawn send(c, s);\n");
+        source.append("print receive(c) == \"").append(text).append("\";\n");
+        source.append("send(c, s + \"!\");\n");
+        source.append("var back = channel(0);\n");
+        source.append("spawn send(back, receive(c) == s + \"!\");\n");
+        source.append("print receive(back);\n");
+        for (String[] flags : BACKENDS)
+            assertEquals("true\ntrue\ntrue\n--\n", SessionRun.of(flags, source.toString()).toString(), String.join(" ", flags));
+    }
+
+    // the embedding API hands out Strings, never ropes
+    @Test
+    void callerGetsAString() throws CompileException {
+        Engine engine = new Engine();
+        Result result = engine.execute(engine.compile("var s = text + text;"), new Context().define("text", LONG));
+        assertEquals(LONG + LONG, result.globals().get("s"));
+        assertTrue(result.globals().get("s") instanceof String);
+    }
+}
@@ -0,0 +1,69 @@
+package com.saivishnu.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScannerTest {
+
+    // every TokenType from AND to WHILE is a keyword, and nothing else is
+    @Test
+    void keywordTableHasEveryKeywordType() {
+        for (TokenType type : TokenType.values()) {
+            boolean isKeyword = type.compareTo(TokenType.AND) >= 0 && type.compareTo(TokenType.WHILE) <= 0;
+            assertEquals(isKeyword, Scanner.keywords.containsValue(type), "keyword table and " + type);
+        }
+    }
+
+    // fixedLexemes and keyword() rely on the table, nothing else may change it
+    @Test
+    void keywordTableIsReadOnly() {
+        assertThrows(UnsupportedOperationException.class, () -> Scanner.keywords.put("loop", TokenType.WHILE));
+        assertThrows(UnsupportedOperationException.class, () -> Scanner.keywords.remove("and"));
+    }
+
+    // keyword() is written out by hand, it has to agree with the map
+    @Test
+    void keywordAgreesWithTable() {
+        for (Map.Entry<String, TokenType> keyword : Scanner.keywords.entrySet()) {
+            String word = keyword.getKey();
+            assertEquals(keyword.getValue(), Scanner.keyword(Source.of(word), 0, word.length()), word);
+            // one letter short or long must not match either
+            assertNull(Scanner.keyword(Source.of(word + "x"), 0, word.length() + 1), word + "x");
+            assertNull(Scanner.keyword(Source.of(word), 0, word.length() - 1), word + " minus a letter");
+        }
+    }
+
+    // the same words inside a longer source, away from offset 0
+    @Test
+    void keywordReadsOnlyItsRange() {
+        for (Map.Entry<String, TokenType> keyword : Scanner.keywords.entrySet()) {
+            String word = keyword.getKey();
+            Source source = Source.of("(" + word + ")");
+            assertEquals(keyword.getValue(), Scanner.keyword(source, 1, word.length() + 1), word);
+        }
+    }
+
+    // a character outside of ASCII is one error, read as chars or as UTF-8 bytes (--mmap)
+    @Test
+    void bytesReportTheSameErrorsAsChars() {
+        String text = "print \u00e9;\nprint \u20ac \ud83d\ude00 1;\n";
+        Source bytes = new Source.Bytes(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(errors(Source.of(text)), errors(bytes));
+        assertEquals("[line 1] Error : Unexpected token.\n"
+                + "[line 2] Error : Unexpected token.\n"
+                + "[line 2] Error : Unexpected token.\n", errors(bytes));
+    }
+
+    private static String errors(Source source) {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        new Scanner(source, new ErrorReporter(new PrintStream(err, true))).scan();
+        return err.toString().replace(System.lineSeparator(), "\n");
+    }
+}
@@ -0,0 +1,142 @@
+package com.saivishnu.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScriptCacheTest {
+
+    // ASCII only, the file is read in the platform's charset
+    private static final String SCRIPT = "var a = 1;\n"
+            + "print a + 2 * (3 - -a);\n"
+            + "var s = \"text\" + \"\";\n"
+            + "var c = channel(0);\n"
+            + "spawn send(c, s + s);\n"
+            + "print receive(c);\n"
+            + "print 1 + 2 + 3 + 4 + 5 + 6 + 7 + 8 + 9 + 10 + a;\n"
+            + "print -s;\n";
+
+    @TempDir
+    Path directory;
+
+    private ScriptCache cache() {
+        return new ScriptCache(directory.resolve("cache"), 1024 * 1024);
+    }
+
+    private List<Path> entries() throws IOException {
+        List<Path> entries = new ArrayList<>();
+        if (!Files.isDirectory(directory.resolve("cache")))
+            return entries;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory.resolve("cache"), "*.loxc")) {
+            for (Path file : files)
+                entries.add(file);
+        }
+        return entries;
+    }
+
+    // stdout, then stderr, of running the script file with --cache
+    private String runFile(String... flags) throws IOException {
+        Path script = directory.resolve("script.lox");
+        if (!Files.exists(script))
+            Files.write(script, SCRIPT.getBytes(StandardCharsets.UTF_8));
+        return SessionRun.file(script, flags).toString();
+    }
+
+    @Test
+    void storedEntryLoadsTheSameTree() throws IOException {
+        ScriptCache cache = cache();
+        byte[] key = cache.key(Source.of(SCRIPT));
+        assertNull(cache.load(key, new SymbolTable()));
+
+        SymbolTable symbols = new SymbolTable();
+        List<Stmt> statements = AstCodecTest.parse(SCRIPT, symbols);
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        cache.store(key, statements, new PrintStream(err, true));
+        assertEquals("", err.toString());
+        assertEquals(1, entries().size());
+
+        SymbolTable loadSymbols = new SymbolTable();
+        List<Stmt> loaded = cache.load(key, loadSymbols);
+        assertNotNull(loaded);
+        assertEquals(AstCodecTest.dump(statements, symbols), AstCodecTest.dump(loaded, loadSymbols));
+
+        // another source is another key
+        assertNull(cache.load(cache.key(Source.of(SCRIPT + "\n")), new SymbolTable()));
+    }
+
+    @Test
+    void cachedRunPrintsTheSame() throws IOException {
+        String flag = "--cache-dir=" + directory.resolve("cache");
+        String uncached = runFile();
+        assertEquals(uncached, runFile("--cache", flag));
+        assertEquals(1, entries().size());
+        // the second run is a hit
+        assertEquals(uncached, runFile("--cache", flag));
+        assertEquals(1, entries().size());
+    }
+
+    // a payload that fails its CRC is a miss: the entry is dropped, the script parsed and the entry written again
+    @Test
+    void corruptEntryIsReparsed() throws IOException {
+        String flag = "--cache-dir=" + directory.resolve("cache");
+        String expected = runFile("--cache", flag);
+        Path entry = entries().get(0);
+        byte[] bytes = Files.readAllBytes(entry);
+        byte[] good = bytes.clone();
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(entry, bytes);
+
+        ScriptCache cache = cache();
+        byte[] key = cache.key(Source.of(SCRIPT));
+        assertNull(cache.load(key, new SymbolTable()));
+        assertFalse(Files.exists(entry));
+
+        Files.write(entry, bytes);
+        assertEquals(expected, runFile("--cache", flag));
+        assertArrayEquals(good, Files.readAllBytes(entry));
+        assertNotNull(cache.load(key, new SymbolTable()));
+    }
+
+    @Test
+    void truncatedEntryIsReparsed() throws IOException {
+        String flag = "--cache-dir=" + directory.resolve("cache");
+        String expected = runFile("--cache", flag);
+        Path entry = entries().get(0);
+        byte[] good = Files.readAllBytes(entry);
+
+        ScriptCache cache = cache();
+        byte[] key = cache.key(Source.of(SCRIPT));
+        for (int length : new int[] { 0, 3, 20, good.length / 2, good.length - 1 }) {
+            Files.write(entry, Arrays.copyOf(good, length));
+            assertNull(cache.load(key, new SymbolTable()), "length " + length);
+            assertFalse(Files.exists(entry));
+        }
+
+        Files.write(entry, Arrays.copyOf(good, good.length / 2));
+        assertEquals(expected, runFile("--cache", flag));
+        assertArrayEquals(good, Files.readAllBytes(entry));
+    }
+
+    // the script still runs, the failure shows up on the session's err
+    @Test
+    void failedStoreIsReportedOnTheSessionErr() throws IOException {
+        Path notADirectory = directory.resolve("file");
+        Files.write(notADirectory, new byte[0]);
+        String expected = runFile();
+        String result = runFile("--cache", "--cache-dir=" + notADirectory);
+        assertTrue(result.contains("--\n[cache] could not write entry: "), result);
+        assertEquals(expected, result.replaceFirst("\\[cache\\] could not write entry: .*\n", ""));
+    }
+}
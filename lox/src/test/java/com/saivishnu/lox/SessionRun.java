@@ -0,0 +1,60 @@
+package com.saivishnu.lox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * what a Session printed, stdout and stderr apart, and its exit code, run
+ * with the given command line flags the way Lox.main() runs it
+ */
+final class SessionRun {
+
+    final String out;
+    final String err;
+    final int exitCode;
+
+    private SessionRun(ByteArrayOutputStream out, ByteArrayOutputStream err, Session session) {
+        this.out = out.toString();
+        this.err = err.toString();
+        this.exitCode = session.reporter.exitCode();
+    }
+
+    // scripts one after the other in one session, like lines at the prompt: a syntax error doesn't stop the next
+    static SessionRun of(String[] flags, String... scripts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Session session = session(flags, out, err);
+        for (int i = 0; i < scripts.length; i++) {
+            if (i > 0)
+                session.reporter.hadError = false;
+            session.run(Source.of(scripts[i]));
+        }
+        session.close();
+        return new SessionRun(out, err, session);
+    }
+
+    static SessionRun file(Path script, String... flags) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Session session = session(flags, out, err);
+        session.runFile(script);
+        session.close();
+        return new SessionRun(out, err, session);
+    }
+
+    private static Session session(String[] flags, ByteArrayOutputStream out, ByteArrayOutputStream err) {
+        Options options = new Options();
+        assertEquals(flags.length, options.parse(flags), String.join(" ", flags));
+        return new Session(options, out, new PrintStream(err, true));
+    }
+
+    // stdout, then stderr
+    @Override
+    public String toString() {
+        return out + "--\n" + err;
+    }
+}
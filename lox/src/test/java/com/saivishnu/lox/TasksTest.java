@@ -0,0 +1,82 @@
+package com.saivishnu.lox;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * spawn statements and channels, in every backend: a task gets the globals
+ * as they were when it was spawned and only talks to others through channels
+ */
+class TasksTest {
+
+    private static final String[][] BACKENDS = { {}, { "--vm" }, { "--closure" } };
+
+    // every backend prints expected (stdout, then stderr) and exits with it
+    private static void assertTasks(String expected, int exitCode, String... scripts) {
+        for (String[] flags : BACKENDS) {
+            SessionRun run = SessionRun.of(flags, scripts);
+            assertEquals(expected, run.toString(), "backend " + String.join(" ", flags));
+            assertEquals(exitCode, run.exitCode, "backend " + String.join(" ", flags));
+        }
+    }
+
+    @Test
+    void spawnAndChannels() {
+        assertTasks("3\ntask got hi\n--\n", 0,
+                "var c = channel(0);\n"
+                        + "spawn send(c, 1 + 2);\n"
+                        + "print receive(c);\n"
+                        + "spawn print \"task got \" + receive(c);\n"
+                        + "send(c, \"hi\");\n");
+    }
+
+    // an error ends only its task, the tasks see the globals as they were when spawned
+    @Test
+    void errorEndsOnlyItsTask() {
+        assertTasks("1\nafter\n--\nOperand must be a number.\n[line 3]\n", 70,
+                "var c = channel(1);\n"
+                        + "var n = 1;\n"
+                        + "spawn print -\"x\";\n",
+                "spawn send(c, n);\n"
+                        + "var n = 2;\n"
+                        + "print receive(c);\n"
+                        + "spawn send(c, \"after\");\n"
+                        + "print receive(c);\n");
+    }
+
+    // a run returns once the tasks spawned by its tasks are done too
+    @Test
+    void runWaitsForNestedTasks() {
+        assertTasks("nested\n--\n", 0, "spawn spawn spawn print \"nested\";\n");
+    }
+
+    @Test
+    void nilAndChannelsGoThroughChannels() {
+        assertTasks("nil\n<channel>\n--\n", 0,
+                "var c = channel(2);\n"
+                        + "send(c, nil);\n"
+                        + "send(c, c);\n"
+                        + "print receive(c);\n"
+                        + "print receive(c);\n");
+    }
+
+    @Test
+    void sendNeedsAChannel() {
+        assertTasks("--\nOperand must be a channel.\n[line 1]\n", 70, "send(1, 2);\n");
+        assertTasks("--\nOperand must be a channel.\n[line 2]\n", 70, "var c = 1;\nprint receive(c);\n");
+    }
+
+    // a thousand tasks at once, all blocked on one unbuffered channel until main receives
+    @Test
+    void manyTasks() {
+        int tasks = 1000;
+        StringBuilder source = new StringBuilder("var c = channel(0);\nvar sum = 0;\n");
+        for (int i = 1; i <= tasks; i++)
+            source.append("spawn send(c, ").append(i).append(");\n");
+        for (int i = 1; i <= tasks; i++)
+            source.append("var sum = sum + receive(c);\n");
+        source.append("print sum;\n");
+        assertTasks(NumberText.toString(tasks * (tasks + 1) / 2.0) + "\n--\n", 0, source.toString());
+    }
+}
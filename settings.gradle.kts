@@ -12,3 +12,5 @@ plugins {
 
 rootProject.name = "lox"
 include("lox")
+// JMH benchmarks for the scanner, parser and interpreter
+include("lox-bench")